@@ -1,5 +1,13 @@
 import java.util.*;		// This line is needed to use the Scanner object
+import java.util.concurrent.*;	// This line is needed to use the ForkJoinPool object
+import java.util.concurrent.atomic.*;	// This line is needed to use the AtomicLong object
+import java.util.random.*;	// This line is needed to use the RandomGenerator object
+import java.util.regex.*;	// This line is needed to use the MatchResult object
+import java.util.stream.*;	// This line is needed to use the Stream object
 import java.io.*;		// This line is needed to use the File object
+import java.nio.*;		// This line is needed to use the MappedByteBuffer object
+import java.nio.channels.*;	// This line is needed to use the FileChannel object
+import java.nio.file.*;	// This line is needed to use the Path object
 
 /**
  * Map changer program that changes treasure maps by obscuring and/or uncovering them.
@@ -11,15 +19,294 @@ import java.io.*;		// This line is needed to use the File object
 public class MapChanger {
 	public static final String VALID_CHARACTERS = "+/\\~X";
 	public static final String OBSCURE_CHARACTERS = "!@#$%^&*()=";
-	public static final Random RAND = new Random();
+	public static final int MAP_REGION_SIZE = 1 << 26;	//Number of bytes (64 MB) mapped from a file at one time
+	public static final int MIN_CHUNK_SIZE = 1 << 20;	//Smallest number of bytes (1 MB) handed to one parallel task
+	public static final int CHUNKS_PER_THREAD = 4;		//Number of chunks created per thread so that uneven chunks balance out
+	public static final int BUFFER_SIZE = 1 << 16;		//Number of bytes (64 KB) copied out of a mapping and transformed at one time
+	public static final int VECTOR_THRESHOLD = 64;		//Inputs shorter than this many bytes always use the scalar kernels
+	public static final String GLOB_CHARACTERS = "*?[{";	//Characters that make a batch input a glob pattern instead of a file name
+	public static final byte VALID_FLAG = 1;			//Flag in CHARACTER_CLASSES for a member of VALID_CHARACTERS
+	public static final byte SPACE_FLAG = 2;			//Flag in CHARACTER_CLASSES for a space
+	public static final byte LINE_END_FLAG = 4;			//Flag in CHARACTER_CLASSES for a line ending ('\n' or '\r')
+	private static final byte[] CHARACTER_CLASSES = createCharacterClasses();	//Flags for each of the 256 byte values
+	static final int OBSCURE_COUNT = OBSCURE_CHARACTERS.length();			//Number of obscure characters to choose from
+	static final int OBSCURE_DIGITS_PER_DRAW = getObscureDigitsPerDraw();	//Number of obscure characters taken from one random draw
+	private static final long OBSCURE_DRAW_RANGE = power(OBSCURE_COUNT, OBSCURE_DIGITS_PER_DRAW);	//Number of different values one draw can take
+	private static final long OBSCURE_DRAW_LIMIT = Long.MAX_VALUE - Long.MAX_VALUE % OBSCURE_DRAW_RANGE;	//Draws at or above this are rejected so every value is equally likely
+	private static volatile RandomGenerator random_source = null;	//Generator set by setRandomSource or setRandomSeed, or null to use one generator per thread
+	private static final boolean VECTOR_AVAILABLE = checkVectorAvailable();	//True if the SIMD kernels in MapChangerVector can be used
 
 	/**
-	* Calls the userInterface method.
+	* Calls the userInterface method if there are no command line arguments. Otherwise
+	* calls the processBatch method, which runs without prompting.
 	*
-	* @param args command line arguments (not used)
+	* @param args command line arguments: none for the interactive interface, or an action,
+	* an input, an output, and options for batch mode (see processBatch)
 	*/
 	public static void main(String[] args) {
-		userInterface();
+		if (args.length == 0) {
+			userInterface();
+		} else {
+			processBatch(args);
+		}
+	}
+
+	/**
+	* Obscures or uncovers many map files without prompting. The arguments are an action (O or U),
+	* an input, and an output, optionally followed by -j and the number of files processed at
+	* the same time (the number of cores by default) and by -m and the name of a manifest file.
+	* With a manifest, inputs whose content, action, and output are the same as in the last run
+	* and whose output still exists are skipped (see MapChangerManifest). The input can be a
+	* file, a directory, whose files are all processed, or a glob pattern such as maps/*.txt.
+	* If the input is a single file the output is a file, otherwise it is a directory that
+	* receives one output file for each input file at the same relative path. Each file runs on
+	* its own virtual thread when the Java version supports them. A summary is printed at the
+	* end, followed by the throughput from MapChangerStatistics, and the program exits with
+	* status 1 if the arguments are invalid or any file fails.
+	* An input of - streams standard input through a MapChangerProcessor to the output file,
+	* or to standard output if the output is also -, without printing a summary.
+	*
+	* @param args String array containing the action, input, output, and options
+	*/
+	public static void processBatch(String[] args) {
+		if (args.length < 3 || args.length % 2 == 0) {
+			printBatchUsage();
+		}
+		boolean obscure = false;
+		if (args[0].equals("O") || args[0].equals("o")) {
+			obscure = true;
+		} else if (!args[0].equals("U") && !args[0].equals("u")) {
+			printBatchUsage();
+		}
+		int concurrency = Runtime.getRuntime().availableProcessors();
+		MapChangerManifest manifest = null;
+		for (int i = 3; i < args.length; i += 2) {
+			if (args[i].equals("-j")) {
+				try {
+					concurrency = Integer.parseInt(args[i + 1]);
+				}
+				catch (NumberFormatException e) {
+					printBatchUsage();
+				}
+				if (concurrency < 1) {
+					printBatchUsage();
+				}
+			} else if (args[i].equals("-m")) {
+				try {
+					manifest = MapChangerManifest.load(Paths.get(args[i + 1]));
+				}
+				catch (IOException e) {
+					System.out.println(e.getMessage());
+					System.exit(1);
+				}
+			} else {
+				printBatchUsage();
+			}
+		}
+
+		if (args[1].equals("-")) {
+			processStandardInput(obscure, args[2]);
+			return;
+		}
+
+		Map<Path, Path> files = new LinkedHashMap<>();
+		try {
+			files = findBatchFiles(args[1], Paths.get(args[2]));
+		}
+		catch (IOException e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
+		if (files.isEmpty()) {
+			System.out.printf("No input files match %s\n", args[1]);
+			System.exit(1);
+		}
+
+		long start_time = System.nanoTime();
+		MapChangerStatistics.reset();
+		AtomicInteger failed = new AtomicInteger();
+		AtomicInteger skipped = new AtomicInteger();
+		AtomicLong bytes = new AtomicLong();
+		ExecutorService executor = newThreadPerTaskExecutor();
+		Semaphore permits = new Semaphore(concurrency);		//Limits how many files are open at the same time
+		final boolean obscure_files = obscure;
+		final MapChangerManifest files_manifest = manifest;
+		try {
+			for (Map.Entry<Path, Path> file : files.entrySet()) {
+				RandomGenerator file_random = splitRandomSource();	//Split here, in sorted file order, so a seeded batch is reproducible
+				permits.acquireUninterruptibly();
+				executor.execute(() -> {
+					try {
+						Path output_parent = file.getValue().toAbsolutePath().getParent();
+						if (output_parent != null) {
+							Files.createDirectories(output_parent);
+						}
+						long size = Files.size(file.getKey());
+						String hash = null;
+						if (files_manifest != null) {
+							hash = MapChangerManifest.hashFile(file.getKey());
+							if (files_manifest.isUpToDate(file.getKey(), size, hash, obscure_files, file.getValue())) {
+								skipped.incrementAndGet();
+								return;
+							}
+						}
+						processMappedFile(obscure_files, file.getKey(), file.getValue(),
+							file_random != null ? file_random : getRandomSource());
+						bytes.addAndGet(size);
+						if (files_manifest != null) {
+							files_manifest.record(file.getKey(), size, hash, obscure_files, file.getValue());
+						}
+					}
+					catch (IOException | RuntimeException e) {
+						failed.incrementAndGet();
+						System.out.printf("%s: %s\n", file.getKey(), e.getMessage());
+					}
+					finally {
+						permits.release();
+					}
+				});
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (manifest != null) {
+			try {
+				manifest.save();
+			}
+			catch (IOException e) {
+				failed.incrementAndGet();
+				System.out.println(e.getMessage());
+			}
+		}
+		double seconds = (System.nanoTime() - start_time) / 1e9;
+		System.out.printf("%s %d files (%d bytes) in %.3f seconds, %d unchanged, %d failed\n", obscure ? "Obscured" : "Uncovered",
+			files.size() - failed.get() - skipped.get(), bytes.get(), seconds, skipped.get(), failed.get());
+		System.out.println(MapChangerStatistics.getSummary());
+		if (failed.get() > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	* Obscures or uncovers standard input as it arrives and writes the result to the output
+	* file, or to standard output if output is -. Errors are printed to standard error so they
+	* never mix with the map, and the program is terminated with status 1.
+	*
+	* @param obscure boolean that, if true, tells the method to obscure the input, if false, to uncover the input
+	* @param output String containing the name of the output file, or - for standard output
+	*/
+	public static void processStandardInput(boolean obscure, String output) {
+		try {
+			if (output.equals("-")) {
+				MapChangerProcessor.transferStream(obscure, System.in, System.out);
+			} else {
+				try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(Paths.get(output)))) {
+					MapChangerProcessor.transferStream(obscure, System.in, file);
+				}
+			}
+		}
+		catch (IOException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	* Prints how to use batch mode to the console and terminates the program.
+	*/
+	public static void printBatchUsage() {
+		System.out.println("Usage: java MapChanger");
+		System.out.println("       java MapChanger (O|U) input output [-j concurrency] [-m manifest]");
+		System.out.println("input may be a file, a directory, a glob pattern such as maps/*.txt, or - for standard input");
+		System.exit(1);
+	}
+
+	/**
+	* Finds the files named by a batch input and pairs each one with the output file it is
+	* written to. A single input file is paired with the output itself, unless the output is an
+	* existing directory. The files in a directory (and its subdirectories) or the files that
+	* match a glob pattern are paired with the same relative path inside the output directory.
+	* Files inside the output directory are never inputs, so an output directory inside the
+	* input directory does not pick up the outputs of an earlier run.
+	*
+	* @param input String containing a file name, directory name, or glob pattern
+	* @param output Path of the output file or directory
+	* @return Map from each input file to its output file, in sorted input order
+	* @throws IOException thrown if the input cannot be found or a directory cannot be read
+	*/
+	public static Map<Path, Path> findBatchFiles(String input, Path output) throws IOException {
+		Map<Path, Path> files = new LinkedHashMap<>();
+		Path input_path = null;
+		int glob_start = -1;
+		for (int i = 0; i < input.length() && glob_start < 0; i++) {
+			if (GLOB_CHARACTERS.indexOf(input.charAt(i)) >= 0) {
+				glob_start = i;
+			}
+		}
+		if (glob_start < 0) {
+			input_path = Paths.get(input);
+			if (Files.isRegularFile(input_path)) {
+				if (Files.isDirectory(output)) {
+					files.put(input_path, output.resolve(input_path.getFileName()));
+				} else {
+					files.put(input_path, output);
+				}
+				return files;
+			}
+			if (!Files.isDirectory(input_path)) {
+				throw new FileNotFoundException(input + " (No such file or directory)");
+			}
+		}
+
+		Path base;		//Directory that the output paths are made relative to
+		PathMatcher matcher = null;
+		if (glob_start < 0) {
+			base = input_path;
+		} else {
+			int separator = input.lastIndexOf('/', glob_start);
+			base = Paths.get(separator < 0 ? "." : input.substring(0, separator + 1));
+			matcher = FileSystems.getDefault().getPathMatcher("glob:" + input.substring(separator + 1));
+		}
+		List<Path> inputs = new ArrayList<>();
+		Path output_directory = output.toAbsolutePath().normalize();
+		try (Stream<Path> walk = Files.walk(base)) {
+			//Skips earlier outputs when the output directory is inside the input directory
+			walk.filter(file -> Files.isRegularFile(file) && !file.toAbsolutePath().normalize().startsWith(output_directory))
+				.forEach(inputs::add);
+		}
+		Collections.sort(inputs);
+		for (Path file : inputs) {
+			Path relative = base.relativize(file);
+			if (matcher == null || matcher.matches(relative)) {
+				files.put(file, output.resolve(relative));
+			}
+		}
+		return files;
+	}
+
+	/**
+	* Returns an executor that starts a new virtual thread for each task if the Java version
+	* supports virtual threads. The build targets Java 17, which has none, so there this is
+	* always a cached pool of platform threads, which reuses idle threads and otherwise starts
+	* a new one for each task. The executor does not limit how many tasks run at once; its
+	* callers do that, such as processBatch with a Semaphore.
+	*
+	* @return ExecutorService for running one task per thread
+	*/
+	public static ExecutorService newThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();		//Virtual threads need Java 21 or later
+		}
 	}
 	
 	/**
@@ -135,22 +422,637 @@ public class MapChanger {
 	* another line. The return from obscureLine is then printed to the output PrintStream.
 	* If the obscure boolean is false, calls the uncoverLine method with the next line of
 	* input from the input file. Continues to do this as long as the input file has another
-	* line. The return from uncoverLine is then printed to the output PrintStream.
+	* line. The return from uncoverLine is then printed to the output PrintStream. The size
+	* recorded in MapChangerStatistics is the UTF-8 length of each line and its line ending,
+	* the same unit as the byte-level modes.
 	*
 	* @param obscure boolean that, if true, tells the method to obscure the input, if false, to uncover the input
 	* @param input Scanner for the input file
 	* @param output PrintStream for the output file
 	*/
 	public static void processFile (boolean obscure, Scanner input, PrintStream output){
+		MapChangerStatistics statistics = MapChangerStatistics.startFile(obscure, "Scanner input");
+		StringBuilder result = new StringBuilder();		//Reused for every line
+		long bytes = 0;
+		long lines = 0;
+		long replaced = 0;
 		if (obscure) {
 			while (input.hasNextLine()) {
-				output.println(obscureLine(input.nextLine()));
+				String line = input.nextLine();
+				result.setLength(0);
+				replaced += obscureLine(line, result);
+				output.println(result);
+				bytes += getLineBytes(line, input.match());
+				lines++;
 			}
 		} else {
 			while (input.hasNextLine()) {
-				output.println(uncoverLine(input.nextLine()));
+				String line = input.nextLine();
+				result.setLength(0);
+				replaced += uncoverLine(line, result);
+				output.println(result);
+				bytes += getLineBytes(line, input.match());
+				lines++;
+			}
+		}
+		statistics.add(lines, replaced);
+		statistics.finishFile(bytes);
+	}
+
+	/**
+	* Returns the number of bytes a line read by Scanner.nextLine took up in UTF-8, including
+	* the line ending that nextLine removed. The line ending is taken from the Scanner's match.
+	*
+	* @param line String returned by nextLine
+	* @param match MatchResult of the Scanner just after nextLine, whose group 1 is the line ending or null
+	* @return long number of UTF-8 bytes in the line and its line ending
+	*/
+	private static long getLineBytes(String line, MatchResult match) {
+		String line_end = match.group(1);
+		return getUTF8Length(line) + (line_end == null ? 0 : getUTF8Length(line_end));
+	}
+
+	/**
+	* Returns the number of bytes text takes up in UTF-8, without encoding it.
+	*
+	* @param text CharSequence that is measured
+	* @return long number of UTF-8 bytes
+	*/
+	public static long getUTF8Length(CharSequence text) {
+		long length = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char ch = text.charAt(i);
+			if (ch < 0x80) {
+				length++;
+			} else if (ch < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(ch) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+				length += 4;		//A surrogate pair is one code point
+				i++;
+			} else {
+				length += 3;
 			}
 		}
+		return length;
+	}
+
+	/**
+	* Obscures or uncovers the input file and writes the result to the output file without
+	* going through a Scanner or PrintStream. Both files are memory mapped and the transform
+	* runs directly over the bytes, so no String is created for any line. Every byte is
+	* treated as one ASCII character and line endings are copied through unchanged, so the
+	* output file is always exactly the same size as the input file.
+	*
+	* @param obscure boolean that, if true, tells the method to obscure the input, if false, to uncover the input
+	* @param input_file Path of the input file
+	* @param output_file Path of the output file, which is created or overwritten
+	* @throws IOException thrown if either file cannot be opened, mapped, or written, or if both are the same file
+	*/
+	public static void processMappedFile(boolean obscure, Path input_file, Path output_file) throws IOException {
+		processMappedFile(obscure, input_file, output_file, getRandomSource());
+	}
+
+	/**
+	* Obscures or uncovers the input file and writes the result to the output file, the same
+	* way as processMappedFile(boolean, Path, Path), choosing obscure characters with the
+	* given random generator.
+	*
+	* @param obscure boolean that, if true, tells the method to obscure the input, if false, to uncover the input
+	* @param input_file Path of the input file
+	* @param output_file Path of the output file, which is created or overwritten
+	* @param random RandomGenerator used to choose obscure characters
+	* @throws IOException thrown if either file cannot be opened, mapped, or written, or if both are the same file
+	*/
+	public static void processMappedFile(boolean obscure, Path input_file, Path output_file, RandomGenerator random) throws IOException {
+		if (Files.exists(output_file) && Files.isSameFile(input_file, output_file)) {
+			throw new IOException("Input and output must be different files: " + input_file);
+		}
+		try (FileChannel input = FileChannel.open(input_file, StandardOpenOption.READ);
+			FileChannel output = FileChannel.open(output_file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MapChangerStatistics statistics = MapChangerStatistics.startFile(obscure, input_file);
+			processMappedRegion(obscure, input, output, 0, input.size(), random, statistics);
+			statistics.finishFile(input.size());
+		}
+	}
+
+	/**
+	* Obscures or uncovers the input file and writes the result to the output file using every
+	* available core. The input is split into chunks that end on a newline and the chunks are
+	* transformed on a ForkJoinPool. Each chunk is written to the same position in the output
+	* file that it was read from, so the output is in the original order and matches the
+	* result of processMappedFile exactly.
+	*
+	* @param obscure boolean that, if true, tells the method to obscure the input, if false, to uncover the input
+	* @param input_file Path of the input file
+	* @param output_file Path of the output file, which is created or overwritten
+	* @param parallelism integer number of threads used to transform the chunks
+	* @throws IOException thrown if either file cannot be opened, mapped, or written, or if both are the same file
+	*/
+	public static void processMappedFileParallel(boolean obscure, Path input_file, Path output_file, int parallelism) throws IOException {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+		}
+		if (Files.exists(output_file) && Files.isSameFile(input_file, output_file)) {
+			throw new IOException("Input and output must be different files: " + input_file);
+		}
+		try (FileChannel input = FileChannel.open(input_file, StandardOpenOption.READ);
+			FileChannel output = FileChannel.open(output_file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long size = input.size();
+			long chunk_size = Math.max(MIN_CHUNK_SIZE, size / ((long) parallelism * CHUNKS_PER_THREAD));
+			List<Long> boundaries = findChunkBoundaries(input, chunk_size);
+			MapChangerStatistics statistics = MapChangerStatistics.startFile(obscure, input_file);
+			List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+			for (int i = 0; i < boundaries.size() - 1; i++) {
+				long start = boundaries.get(i);
+				long end = boundaries.get(i + 1);
+				RandomGenerator chunk_random = splitRandomSource();	//Split here, in chunk order, so a seeded run is reproducible
+				tasks.add(ForkJoinTask.adapt(() -> {
+					processMappedRegion(obscure, input, output, start, end,
+						chunk_random != null ? chunk_random : getRandomSource(), statistics);
+					return null;
+				}));
+			}
+			runTasks(parallelism, tasks);
+			statistics.finishFile(size);
+		}
+	}
+
+	/**
+	* Runs tasks on a new ForkJoinPool with the given number of threads and waits for all of
+	* them. If a task fails, the exception it threw is rethrown as it was thrown: the pool and
+	* ForkJoinTask.adapt wrap it in other exceptions, which are removed by getOriginalFailure.
+	*
+	* @param parallelism integer number of threads that run the tasks
+	* @param tasks List of ForkJoinTask objects that are run
+	* @throws IOException thrown if a task threw an IOException, or if the wait is interrupted
+	*/
+	public static void runTasks(int parallelism, List<ForkJoinTask<Void>> tasks) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			for (ForkJoinTask<Void> task : tasks) {
+				pool.execute(task);
+			}
+			for (ForkJoinTask<Void> task : tasks) {
+				task.get();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for tasks");
+		}
+		catch (ExecutionException e) {
+			Throwable failure = getOriginalFailure(e);
+			if (failure instanceof IOException) {
+				throw (IOException) failure;
+			}
+			if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			}
+			if (failure instanceof Error) {
+				throw (Error) failure;
+			}
+			throw new IOException(failure);
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	* Returns the exception a task originally threw, given the exception that reached the
+	* thread waiting for it. ExecutionException and plain RuntimeException wrappers are
+	* removed, as are the copies of the same class that ForkJoinTask makes when the task
+	* failed on another thread.
+	*
+	* @param failure Throwable that reached the waiting thread
+	* @return Throwable the task threw
+	*/
+	public static Throwable getOriginalFailure(Throwable failure) {
+		Throwable original = failure;
+		while (original.getCause() != null && (original instanceof ExecutionException
+			|| original.getClass() == RuntimeException.class || original.getClass() == original.getCause().getClass())) {
+			original = original.getCause();
+		}
+		return original;
+	}
+
+	/**
+	* Returns the positions where the chunks of the input channel start, followed by the size
+	* of the channel. Each chunk is about chunk_size bytes long and, except for the last chunk,
+	* ends just after a newline so that no line is split between two chunks.
+	*
+	* @param input FileChannel for the input file, opened for reading
+	* @param chunk_size long number of bytes wanted in each chunk
+	* @return List of chunk start positions, ending with the size of the channel
+	* @throws IOException thrown if the channel cannot be read
+	*/
+	public static List<Long> findChunkBoundaries(FileChannel input, long chunk_size) throws IOException {
+		long size = input.size();
+		List<Long> boundaries = new ArrayList<>();
+		boundaries.add(0L);
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		long position = chunk_size;
+		while (position < size) {
+			long newline = -1;
+			while (newline < 0 && position < size) {
+				buffer.clear();
+				int count = input.read(buffer, position);
+				for (int i = 0; i < count && newline < 0; i++) {
+					if (buffer.get(i) == '\n') {
+						newline = position + i;
+					}
+				}
+				position += Math.max(count, 0);
+			}
+			if (newline < 0 || newline + 1 >= size) {
+				break;		//No newline is left, so the rest of the file is the last chunk
+			}
+			boundaries.add(newline + 1);
+			position = newline + 1 + chunk_size;
+		}
+		boundaries.add(size);
+		return boundaries;
+	}
+
+	/**
+	* Obscures or uncovers the bytes from start (inclusive) to end (exclusive) of the input
+	* channel and writes them to the same positions of the output channel. The range is
+	* mapped MAP_REGION_SIZE bytes at a time so files larger than 2 GB can be processed.
+	*
+	* @param obscure boolean that, if true, tells the method to obscure the input, if false, to uncover the input
+	* @param input FileChannel for the input file, opened for reading
+	* @param output FileChannel for the output file, opened for reading and writing
+	* @param start long position of the first byte to process
+	* @param end long position one past the last byte to process
+	* @throws IOException thrown if either channel cannot be mapped
+	*/
+	public static void processMappedRegion(boolean obscure, FileChannel input, FileChannel output, long start, long end) throws IOException {
+		processMappedRegion(obscure, input, output, start, end, getRandomSource());
+	}
+
+	/**
+	* Obscures or uncovers the bytes from start (inclusive) to end (exclusive) of the input
+	* channel and writes them to the same positions of the output channel, drawing obscure
+	* characters from the given random generator.
+	*
+	* @param obscure boolean that, if true, tells the method to obscure the input, if false, to uncover the input
+	* @param input FileChannel for the input file, opened for reading
+	* @param output FileChannel for the output file, opened for reading and writing
+	* @param start long position of the first byte to process
+	* @param end long position one past the last byte to process
+	* @param random RandomGenerator used to choose obscure characters
+	* @throws IOException thrown if either channel cannot be mapped
+	*/
+	public static void processMappedRegion(boolean obscure, FileChannel input, FileChannel output, long start, long end,
+		RandomGenerator random) throws IOException {
+		processMappedRegion(obscure, input, output, start, end, random, null);
+	}
+
+	/**
+	* Obscures or uncovers the bytes from start (inclusive) to end (exclusive) of the input
+	* channel and writes them to the same positions of the output channel, drawing obscure
+	* characters from the given random generator and adding the number of lines and replaced
+	* characters to the given statistics.
+	*
+	* @param obscure boolean that, if true, tells the method to obscure the input, if false, to uncover the input
+	* @param input FileChannel for the input file, opened for reading
+	* @param output FileChannel for the output file, opened for reading and writing
+	* @param start long position of the first byte to process
+	* @param end long position one past the last byte to process
+	* @param random RandomGenerator used to choose obscure characters
+	* @param statistics MapChangerStatistics for the file, or null if nothing is counted
+	* @throws IOException thrown if either channel cannot be mapped
+	*/
+	public static void processMappedRegion(boolean obscure, FileChannel input, FileChannel output, long start, long end,
+		RandomGenerator random, MapChangerStatistics statistics) throws IOException {
+		long lines = 0;
+		long replaced = 0;
+		byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(end - start, 0))];
+		for (long position = start; position < end; position += MAP_REGION_SIZE) {
+			int region_size = (int) Math.min(MAP_REGION_SIZE, end - position);
+			MappedByteBuffer in = input.map(FileChannel.MapMode.READ_ONLY, position, region_size);
+			MappedByteBuffer out = output.map(FileChannel.MapMode.READ_WRITE, position, region_size);
+			while (in.hasRemaining()) {
+				int count = Math.min(buffer.length, in.remaining());
+				in.get(buffer, 0, count);
+				if (statistics != null) {
+					lines += countLines(buffer, 0, count);
+				}
+				if (obscure) {
+					replaced += obscureBytes(buffer, 0, buffer, 0, count, random);
+				} else {
+					replaced += uncoverBytes(buffer, 0, buffer, 0, count);
+				}
+				out.put(buffer, 0, count);
+			}
+		}
+		if (statistics != null) {
+			statistics.add(lines, replaced);
+		}
+	}
+
+	/**
+	* Returns the number of newlines in length bytes of src starting at offset. Uses the SIMD
+	* kernel in MapChangerVector when it is available.
+	*
+	* @param src byte array that is counted
+	* @param offset integer index of the first byte
+	* @param length integer number of bytes to count
+	* @return integer number of '\n' bytes
+	*/
+	public static int countLines(byte[] src, int offset, int length) {
+		if (VECTOR_AVAILABLE && length >= VECTOR_THRESHOLD) {
+			return MapChangerVector.countLines(src, offset, length);
+		}
+		int lines = 0;
+		for (int i = offset; i < offset + length; i++) {
+			if (src[i] == '\n') {
+				lines++;
+			}
+		}
+		return lines;
+	}
+
+	/**
+	* Returns a random obscure character if the byte is a space. Returns the byte unchanged otherwise.
+	*
+	* @param b byte of input to be obscured
+	* @return byte containing the obscured input
+	*/
+	public static byte obscureByte(byte b) {
+		if (CHARACTER_CLASSES[b & 0xFF] == SPACE_FLAG) {
+			return (byte) getRandomCharacter();
+		}
+		return b;
+	}
+
+	/**
+	* Returns the byte unchanged if it is a valid character or a line ending ('\n' or '\r').
+	* Returns a space otherwise.
+	*
+	* @param b byte of input to be uncovered
+	* @return byte containing the uncovered input
+	*/
+	public static byte uncoverByte(byte b) {
+		if ((CHARACTER_CLASSES[b & 0xFF] & (VALID_FLAG | LINE_END_FLAG)) != 0) {
+			return b;
+		}
+		return ' ';
+	}
+
+	/**
+	* Obscures length bytes of src starting at src_offset and writes them to dst starting at
+	* dst_offset. Spaces are replaced with obscure characters and all other bytes are copied.
+	* src and dst may be the same array.
+	*
+	* @param src byte array containing the input to be obscured
+	* @param src_offset integer index of the first byte of input
+	* @param dst byte array the obscured bytes are written to
+	* @param dst_offset integer index in dst of the first obscured byte
+	* @param length integer number of bytes to obscure
+	* @return integer number of spaces that were replaced
+	*/
+	public static int obscureBytes(byte[] src, int src_offset, byte[] dst, int dst_offset, int length) {
+		return obscureBytes(src, src_offset, dst, dst_offset, length, getRandomSource());
+	}
+
+	/**
+	* Obscures length bytes of src starting at src_offset and writes them to dst starting at
+	* dst_offset, choosing obscure characters with the given random generator. Each random
+	* draw supplies the obscure characters for several spaces.
+	*
+	* @param src byte array containing the input to be obscured
+	* @param src_offset integer index of the first byte of input
+	* @param dst byte array the obscured bytes are written to
+	* @param dst_offset integer index in dst of the first obscured byte
+	* @param length integer number of bytes to obscure
+	* @param random RandomGenerator used to choose obscure characters
+	* @return integer number of spaces that were replaced
+	*/
+	public static int obscureBytes(byte[] src, int src_offset, byte[] dst, int dst_offset, int length, RandomGenerator random) {
+		if (VECTOR_AVAILABLE && length >= VECTOR_THRESHOLD) {
+			return MapChangerVector.obscureBytes(src, src_offset, dst, dst_offset, length, random);
+		}
+		return obscureBytesScalar(src, src_offset, dst, dst_offset, length, random);
+	}
+
+	/**
+	* Obscures length bytes of src starting at src_offset one byte at a time, without the
+	* Vector API. This is what obscureBytes uses when the SIMD kernels are unavailable.
+	*
+	* @param src byte array containing the input to be obscured
+	* @param src_offset integer index of the first byte of input
+	* @param dst byte array the obscured bytes are written to
+	* @param dst_offset integer index in dst of the first obscured byte
+	* @param length integer number of bytes to obscure
+	* @param random RandomGenerator used to choose obscure characters
+	* @return integer number of spaces that were replaced
+	*/
+	public static int obscureBytesScalar(byte[] src, int src_offset, byte[] dst, int dst_offset, int length, RandomGenerator random) {
+		int replaced = 0;
+		byte[] pool = new byte[OBSCURE_DIGITS_PER_DRAW];	//Obscure characters from one random draw
+		int next = pool.length;		//Index in pool of the next unused character
+		for (int i = 0; i < length; i++) {
+			byte b = src[src_offset + i];
+			if (CHARACTER_CLASSES[b & 0xFF] == SPACE_FLAG) {
+				if (next == pool.length) {
+					fillObscureCharacters(pool, 0, pool.length, random);
+					next = 0;
+				}
+				b = pool[next++];
+				replaced++;
+			}
+			dst[dst_offset + i] = b;
+		}
+		return replaced;
+	}
+
+	/**
+	* Uncovers length bytes of src starting at src_offset and writes them to dst starting at
+	* dst_offset. Valid characters and line endings are copied and all other bytes are replaced
+	* with spaces. src and dst may be the same array. No objects are created. Uses the SIMD
+	* kernel in MapChangerVector when it is available.
+	*
+	* @param src byte array containing the input to be uncovered
+	* @param src_offset integer index of the first byte of input
+	* @param dst byte array the uncovered bytes are written to
+	* @param dst_offset integer index in dst of the first uncovered byte
+	* @param length integer number of bytes to uncover
+	* @return integer number of bytes that were replaced with spaces
+	*/
+	public static int uncoverBytes(byte[] src, int src_offset, byte[] dst, int dst_offset, int length) {
+		if (VECTOR_AVAILABLE && length >= VECTOR_THRESHOLD) {
+			return MapChangerVector.uncoverBytes(src, src_offset, dst, dst_offset, length);
+		}
+		return uncoverBytesScalar(src, src_offset, dst, dst_offset, length);
+	}
+
+	/**
+	* Uncovers length bytes of src starting at src_offset one byte at a time, without the
+	* Vector API. This is what uncoverBytes uses when the SIMD kernel is unavailable.
+	*
+	* @param src byte array containing the input to be uncovered
+	* @param src_offset integer index of the first byte of input
+	* @param dst byte array the uncovered bytes are written to
+	* @param dst_offset integer index in dst of the first uncovered byte
+	* @param length integer number of bytes to uncover
+	* @return integer number of bytes that were replaced with spaces
+	*/
+	public static int uncoverBytesScalar(byte[] src, int src_offset, byte[] dst, int dst_offset, int length) {
+		int replaced = 0;
+		for (int i = 0; i < length; i++) {
+			byte b = src[src_offset + i];
+			if ((CHARACTER_CLASSES[b & 0xFF] & (VALID_FLAG | LINE_END_FLAG)) == 0 && b != ' ') {
+				b = ' ';
+				replaced++;
+			}
+			dst[dst_offset + i] = b;
+		}
+		return replaced;
+	}
+
+	/**
+	* Obscures length characters of src starting at src_offset and writes them to dst starting
+	* at dst_offset. Spaces are replaced with obscure characters and all other characters are
+	* copied. src and dst may be the same array.
+	*
+	* @param src char array containing the input to be obscured
+	* @param src_offset integer index of the first character of input
+	* @param dst char array the obscured characters are written to
+	* @param dst_offset integer index in dst of the first obscured character
+	* @param length integer number of characters to obscure
+	* @return integer number of spaces that were replaced
+	*/
+	public static int obscureChars(char[] src, int src_offset, char[] dst, int dst_offset, int length) {
+		return obscureChars(src, src_offset, dst, dst_offset, length, getRandomSource());
+	}
+
+	/**
+	* Obscures length characters of src starting at src_offset and writes them to dst starting
+	* at dst_offset, choosing obscure characters with the given random generator. Each random
+	* draw supplies the obscure characters for several spaces.
+	*
+	* @param src char array containing the input to be obscured
+	* @param src_offset integer index of the first character of input
+	* @param dst char array the obscured characters are written to
+	* @param dst_offset integer index in dst of the first obscured character
+	* @param length integer number of characters to obscure
+	* @param random RandomGenerator used to choose obscure characters
+	* @return integer number of spaces that were replaced
+	*/
+	public static int obscureChars(char[] src, int src_offset, char[] dst, int dst_offset, int length, RandomGenerator random) {
+		int replaced = 0;
+		byte[] pool = new byte[OBSCURE_DIGITS_PER_DRAW];	//Obscure characters from one random draw
+		int next = pool.length;		//Index in pool of the next unused character
+		for (int i = 0; i < length; i++) {
+			char ch = src[src_offset + i];
+			if (ch == ' ') {
+				if (next == pool.length) {
+					fillObscureCharacters(pool, 0, pool.length, random);
+					next = 0;
+				}
+				ch = (char) pool[next++];
+				replaced++;
+			}
+			dst[dst_offset + i] = ch;
+		}
+		return replaced;
+	}
+
+	/**
+	* Uncovers length characters of src starting at src_offset and writes them to dst starting
+	* at dst_offset. Valid characters and line endings are copied and all other characters are
+	* replaced with spaces. src and dst may be the same array. No objects are created.
+	*
+	* @param src char array containing the input to be uncovered
+	* @param src_offset integer index of the first character of input
+	* @param dst char array the uncovered characters are written to
+	* @param dst_offset integer index in dst of the first uncovered character
+	* @param length integer number of characters to uncover
+	* @return integer number of characters that were replaced with spaces
+	*/
+	public static int uncoverChars(char[] src, int src_offset, char[] dst, int dst_offset, int length) {
+		int replaced = 0;
+		for (int i = 0; i < length; i++) {
+			char ch = src[src_offset + i];
+			if (!isKeptByUncover(ch)) {
+				if (ch != ' ') {
+					replaced++;
+				}
+				ch = ' ';
+			}
+			dst[dst_offset + i] = ch;
+		}
+		return replaced;
+	}
+
+	/**
+	* Obscures the line and appends the result to the output StringBuilder. Spaces are
+	* replaced with obscure characters and all other characters are appended unchanged.
+	*
+	* @param line CharSequence of input to be obscured
+	* @param output StringBuilder the obscured line is appended to
+	* @return integer number of spaces that were replaced
+	*/
+	public static int obscureLine(CharSequence line, StringBuilder output) {
+		return obscureLine(line, output, getRandomSource());
+	}
+
+	/**
+	* Obscures the line and appends the result to the output StringBuilder, choosing obscure
+	* characters with the given random generator. Each random draw supplies the obscure
+	* characters for several spaces.
+	*
+	* @param line CharSequence of input to be obscured
+	* @param output StringBuilder the obscured line is appended to
+	* @param random RandomGenerator used to choose obscure characters
+	* @return integer number of spaces that were replaced
+	*/
+	public static int obscureLine(CharSequence line, StringBuilder output, RandomGenerator random) {
+		int replaced = 0;
+		byte[] pool = new byte[OBSCURE_DIGITS_PER_DRAW];	//Obscure characters from one random draw
+		int next = pool.length;		//Index in pool of the next unused character
+		output.ensureCapacity(output.length() + line.length());
+		for (int i = 0; i < line.length(); i++) {
+			char ch = line.charAt(i);
+			if (ch == ' ') {
+				if (next == pool.length) {
+					fillObscureCharacters(pool, 0, pool.length, random);
+					next = 0;
+				}
+				ch = (char) pool[next++];
+				replaced++;
+			}
+			output.append(ch);
+		}
+		return replaced;
+	}
+
+	/**
+	* Uncovers the line and appends the result to the output StringBuilder. Valid characters
+	* are appended unchanged and all other characters, line endings included, are appended as
+	* spaces, as uncoverLine(String) does.
+	*
+	* @param line CharSequence of input to be uncovered
+	* @param output StringBuilder the uncovered line is appended to
+	* @return integer number of characters that were replaced with spaces
+	*/
+	public static int uncoverLine(CharSequence line, StringBuilder output) {
+		int replaced = 0;
+		output.ensureCapacity(output.length() + line.length());
+		for (int i = 0; i < line.length(); i++) {
+			char ch = line.charAt(i);
+			if (!isValidCharacter(ch)) {
+				if (ch != ' ') {
+					replaced++;
+				}
+				ch = ' ';
+			}
+			output.append(ch);
+		}
+		return replaced;
 	}
 
 	/**
@@ -161,34 +1063,28 @@ public class MapChanger {
 	* @return String containing the obscured input line
 	*/
 	public static String obscureLine(String line){
-		String obscured_line = "";
-		for (int i = 0; i < line.length(); i++) {
-			if (line.charAt(i) == ' ') {				//If the character at location i in the unobscured line is a space,
-				obscured_line += getRandomCharacter();	//place a random character in its place for the obscured line
-			} else {
-				obscured_line += line.charAt(i);		//For all other characters (valid characters in this case of an unobscured line),
-			}											//put the character in the obscured line
-		}
-		return obscured_line;
+		char[] obscured_line = line.toCharArray();
+		obscureChars(obscured_line, 0, obscured_line, 0, obscured_line.length);	//Obscures the copy of the line in place
+		return new String(obscured_line);
 	}
 
 	/**
 	* Reads the input String one character at a time and replaces obscure characters with spaces.
-	* Keeps the valid characters. Returns the uncovered line string.
+	* Keeps the valid characters. Returns the uncovered line string. A line ending is not a
+	* valid character, so it is replaced with a space too; only uncoverChars and uncoverBytes,
+	* which work on whole files, keep line endings.
 	*
 	* @param line String of input to be uncovered
 	* @return String containing the uncovered input line
 	*/
 	public static String uncoverLine(String line){
-		String uncovered_line = "";
-		for (int i = 0; i < line.length(); i++) {
-			if (isValidCharacter(line.charAt(i))) {		//If the character at location i in the obscured line is a valid character,
-				uncovered_line += line.charAt(i);		//put the character in the uncovered line
-			} else {
-				uncovered_line += ' ';					//For all other characters, place a space in its place for the uncovered line
+		char[] uncovered_line = line.toCharArray();
+		for (int i = 0; i < uncovered_line.length; i++) {
+			if (!isValidCharacter(uncovered_line[i])) {		//For all characters but the valid ones, place a space
+				uncovered_line[i] = ' ';
 			}
 		}
-		return uncovered_line;
+		return new String(uncovered_line);
 	}
 
 	/**
@@ -199,13 +1095,36 @@ public class MapChanger {
 	* @return boolean set as true if the character is a member of the VALID_CHARACTERS constant and false otherwise
 	*/
 	public static boolean isValidCharacter(char ch){
-		boolean char_boolean = false;
+		return ch < CHARACTER_CLASSES.length && CHARACTER_CLASSES[ch] == VALID_FLAG;
+	}
+
+	/**
+	* Returns true if ch is a valid character or a line ending, which uncovering keeps unchanged.
+	* Returns false otherwise.
+	*
+	* @param ch character that is checked
+	* @return boolean set as true if uncovering keeps the character and false otherwise
+	*/
+	private static boolean isKeptByUncover(char ch) {
+		return ch < CHARACTER_CLASSES.length && (CHARACTER_CLASSES[ch] & (VALID_FLAG | LINE_END_FLAG)) != 0;
+	}
+
+	/**
+	* Creates the 256 entry table used to classify characters without searching the
+	* VALID_CHARACTERS constant. Each entry holds VALID_FLAG, SPACE_FLAG, LINE_END_FLAG,
+	* or 0 for every other character.
+	*
+	* @return byte array containing the flags for each of the 256 byte values
+	*/
+	private static byte[] createCharacterClasses() {
+		byte[] classes = new byte[256];
 		for (int i = 0; i < VALID_CHARACTERS.length(); i++) {
-			if (ch == VALID_CHARACTERS.charAt(i)) {
-				char_boolean = true;
-			}
+			classes[VALID_CHARACTERS.charAt(i)] = VALID_FLAG;
 		}
-		return char_boolean;
+		classes[' '] = SPACE_FLAG;
+		classes['\n'] = LINE_END_FLAG;
+		classes['\r'] = LINE_END_FLAG;
+		return classes;
 	}
 
 	/**
@@ -215,7 +1134,201 @@ public class MapChanger {
 	* @return random character from the OBSCURE_CHARACTERS constant
 	*/
 	public static char getRandomCharacter(){
-		char random_char = OBSCURE_CHARACTERS.charAt(RAND.nextInt(OBSCURE_CHARACTERS.length()));
-		return random_char;
+		return getRandomCharacter(getRandomSource());
+	}
+
+	/**
+	* Randomly selects a character from the OBSCURE_CHARACTERS constant using the given
+	* random generator and returns it.
+	*
+	* @param random RandomGenerator used to choose the character
+	* @return random character from the OBSCURE_CHARACTERS constant
+	*/
+	public static char getRandomCharacter(RandomGenerator random) {
+		MapChangerStatistics.countObscureDraw();
+		return OBSCURE_CHARACTERS.charAt(random.nextInt(OBSCURE_COUNT));
+	}
+
+	/**
+	* Fills count elements of dst starting at offset with random characters from the
+	* OBSCURE_CHARACTERS constant. Several characters are taken from each random draw
+	* instead of drawing once per character. Every kernel that obscures gets its characters
+	* from here, OBSCURE_DIGITS_PER_DRAW (one draw) at a time, so they all use the same
+	* digits of the same draws in the same order.
+	*
+	* @param dst byte array the obscure characters are written to
+	* @param offset integer index in dst of the first obscure character
+	* @param count integer number of obscure characters to write
+	* @param random RandomGenerator used to choose the characters
+	*/
+	public static void fillObscureCharacters(byte[] dst, int offset, int count, RandomGenerator random) {
+		for (int i = 0; i < count; i += OBSCURE_DIGITS_PER_DRAW) {
+			long draw = nextObscureDraw(random);
+			for (int j = i; j < Math.min(count, i + OBSCURE_DIGITS_PER_DRAW); j++) {
+				dst[offset + j] = (byte) OBSCURE_CHARACTERS.charAt((int) (draw % OBSCURE_COUNT));
+				draw /= OBSCURE_COUNT;
+			}
+		}
+	}
+
+	/**
+	* Fills count elements of dst starting at offset with random characters from the
+	* OBSCURE_CHARACTERS constant, the same characters fillObscureCharacters would write to a
+	* byte array.
+	*
+	* @param dst char array the obscure characters are written to
+	* @param offset integer index in dst of the first obscure character
+	* @param count integer number of obscure characters to write
+	* @param random RandomGenerator used to choose the characters
+	*/
+	public static void fillObscureCharacters(char[] dst, int offset, int count, RandomGenerator random) {
+		byte[] pool = new byte[OBSCURE_DIGITS_PER_DRAW];	//Obscure characters from one random draw
+		for (int i = 0; i < count; i += pool.length) {
+			int pooled = Math.min(pool.length, count - i);
+			fillObscureCharacters(pool, 0, pooled, random);
+			for (int j = 0; j < pooled; j++) {
+				dst[offset + i + j] = (char) pool[j];
+			}
+		}
+	}
+
+	/**
+	* Returns a random value between 0 (inclusive) and OBSCURE_DRAW_RANGE (exclusive). Read in
+	* base OBSCURE_COUNT, each of its OBSCURE_DIGITS_PER_DRAW digits picks one obscure character,
+	* and every digit is equally likely because draws at or above OBSCURE_DRAW_LIMIT are rejected.
+	*
+	* @param random RandomGenerator the value is drawn from
+	* @return long value whose digits select obscure characters
+	*/
+	private static long nextObscureDraw(RandomGenerator random) {
+		MapChangerStatistics.countObscureDraw();
+		long draw = random.nextLong() >>> 1;	//Drops the sign bit so the draw is never negative
+		while (draw >= OBSCURE_DRAW_LIMIT) {
+			draw = random.nextLong() >>> 1;
+		}
+		return draw % OBSCURE_DRAW_RANGE;
+	}
+
+	/**
+	* Returns true if obscureBytes and uncoverBytes use the SIMD kernels in MapChangerVector.
+	* This needs the JVM to be started with --add-modules jdk.incubator.vector.
+	*
+	* @return boolean set as true if the SIMD kernels are used and false otherwise
+	*/
+	public static boolean isVectorAvailable() {
+		return VECTOR_AVAILABLE;
+	}
+
+	/**
+	* Returns true if the Vector API can be loaded and the SIMD kernels give the same result
+	* as the scalar kernels for every byte value. Returns false otherwise, so that an old JVM,
+	* a JVM without the incubator module, or a kernel that disagrees falls back to the scalar path.
+	*
+	* @return boolean set as true if the SIMD kernels can be used and false otherwise
+	*/
+	private static boolean checkVectorAvailable() {
+		try {
+			byte[] probe = new byte[512];
+			for (int i = 0; i < probe.length; i++) {
+				probe[i] = (byte) i;
+			}
+			byte[] scalar = new byte[probe.length];
+			byte[] vector = new byte[probe.length];
+			int scalar_replaced = uncoverBytesScalar(probe, 0, scalar, 0, probe.length);
+			int vector_replaced = MapChangerVector.uncoverBytes(probe, 0, vector, 0, probe.length);
+			return scalar_replaced == vector_replaced && Arrays.equals(scalar, vector)
+				&& MapChangerVector.indexOfSpace(probe, ' ' + 1, probe.length) == 256 + ' '
+				&& MapChangerVector.countLines(probe, 0, probe.length) == 2;
+		}
+		catch (LinkageError e) {
+			return false;		//The incubator module was not added with --add-modules jdk.incubator.vector
+		}
+	}
+
+	/**
+	* Returns the number of obscure characters taken from one random draw. This is the largest
+	* count whose combinations fit in 57 bits, so fewer than 1 in 64 draws are rejected.
+	*
+	* @return integer number of obscure characters per random draw
+	*/
+	private static int getObscureDigitsPerDraw() {
+		int digits = 1;
+		while (power(OBSCURE_COUNT, digits + 1) <= (1L << 57)) {
+			digits++;
+		}
+		return digits;
+	}
+
+	/**
+	* Returns base raised to exponent.
+	*
+	* @param base long value to be raised
+	* @param exponent integer power to raise the base to
+	* @return long containing base to the power of exponent
+	*/
+	private static long power(long base, int exponent) {
+		long result = 1;
+		for (int i = 0; i < exponent; i++) {
+			result *= base;
+		}
+		return result;
+	}
+
+	/**
+	* Sets the random generator used to choose obscure characters. The generator is shared by
+	* every thread that obscures, so it must be safe to use from more than one thread unless
+	* obscuring only happens on one thread at a time. If the generator is a
+	* RandomGenerator.SplittableGenerator, batch mode gives each file, and
+	* processMappedFileParallel each chunk, its own generator split from it. Passing null
+	* goes back to one generator per thread.
+	*
+	* @param source RandomGenerator used to choose obscure characters, or null for one generator per thread
+	*/
+	public static void setRandomSource(RandomGenerator source) {
+		random_source = source;
+	}
+
+	/**
+	* Seeds the random generator used to choose obscure characters so that obscuring is
+	* reproducible: the same seed and input always give the same output. Batch mode and
+	* processMappedFileParallel split a generator from it for each file or chunk, in sorted
+	* file or chunk order, so they are reproducible as well; in processMappedFileParallel the
+	* parallelism must also be the same. The seeded generator itself is not safe to share
+	* between threads that obscure at the same time.
+	*
+	* @param seed long seed for a new SplittableRandom
+	*/
+	public static void setRandomSeed(long seed) {
+		random_source = new SplittableRandom(seed);
+	}
+
+	/**
+	* Returns the random generator used to choose obscure characters. This is the generator set
+	* by setRandomSource or setRandomSeed, or, if none is set, the calling thread's own
+	* ThreadLocalRandom so that threads never wait on each other for random numbers.
+	*
+	* @return RandomGenerator used to choose obscure characters
+	*/
+	public static RandomGenerator getRandomSource() {
+		RandomGenerator source = random_source;
+		if (source == null) {
+			return ThreadLocalRandom.current();
+		}
+		return source;
+	}
+
+	/**
+	* Returns a new generator split from the random source if the source is a
+	* RandomGenerator.SplittableGenerator. Returns null otherwise, meaning the caller should use
+	* getRandomSource on the thread that does the work.
+	*
+	* @return RandomGenerator split from the random source, or null if it cannot be split
+	*/
+	private static RandomGenerator splitRandomSource() {
+		RandomGenerator source = random_source;
+		if (source instanceof RandomGenerator.SplittableGenerator) {
+			return ((RandomGenerator.SplittableGenerator) source).split();
+		}
+		return null;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,170 @@
+import java.util.*;		// This line is needed to use the Map object
+import java.util.concurrent.*;	// This line is needed to use the ConcurrentHashMap object
+import java.io.*;		// This line is needed to use the IOException object
+import java.nio.*;		// This line is needed to use the MappedByteBuffer object
+import java.nio.channels.*;	// This line is needed to use the FileChannel object
+import java.nio.file.*;	// This line is needed to use the Path object
+import java.security.*;	// This line is needed to use the MessageDigest object
+
+/**
+ * Manifest that remembers which map files MapChanger has already processed, so that a
+ * batch run can skip inputs that have not changed since the last run. Each line of the
+ * manifest file holds an input path, its size and SHA-256 content digest, the action (O or
+ * U), and the output path, separated by tabs. An input is keyed on the SHA-256 of its
+ * contents. The manifest is safe to use from many threads at once.
+ *
+ * @author Chris D'Englere
+ */
+public class MapChangerManifest {
+	public static final String SEPARATOR = "\t";	//Separates the fields on each line of the manifest file
+
+	private final Path file;
+	private final Map<String, String> entries = new ConcurrentHashMap<>();	//Input path to the rest of its manifest line
+	private volatile boolean changed = false;
+
+	/**
+	* Creates an empty manifest that will be saved to the given file.
+	*
+	* @param file Path of the manifest file
+	*/
+	public MapChangerManifest(Path file) {
+		this.file = file;
+	}
+
+	/**
+	* Reads the manifest from the given file. If the file does not exist yet, an empty
+	* manifest is returned. Lines that do not have five fields are ignored.
+	*
+	* @param file Path of the manifest file
+	* @return MapChangerManifest containing the entries in the file
+	* @throws IOException thrown if the file exists but cannot be read
+	*/
+	public static MapChangerManifest load(Path file) throws IOException {
+		MapChangerManifest manifest = new MapChangerManifest(file);
+		if (Files.exists(file)) {
+			for (String line : Files.readAllLines(file)) {
+				String[] fields = line.split(SEPARATOR, -1);
+				if (fields.length == 5) {
+					manifest.entries.put(fields[0], line.substring(fields[0].length() + 1));
+				}
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	* Returns true if the input was last processed with the same action into the same output,
+	* its content has the same size and hash as then, and the output file still exists.
+	* Returns false otherwise, meaning the input has to be processed again.
+	*
+	* @param input Path of the input file
+	* @param size long size of the input file in bytes
+	* @param hash String containing the content digest of the input file from hashFile
+	* @param obscure boolean that is true if the input is being obscured and false if it is being uncovered
+	* @param output Path of the output file
+	* @return boolean set as true if the input can be skipped and false otherwise
+	*/
+	public boolean isUpToDate(Path input, long size, String hash, boolean obscure, Path output) {
+		String entry = entries.get(key(input));
+		return entry != null && entry.equals(value(size, hash, obscure, output)) && Files.exists(output);
+	}
+
+	/**
+	* Records that the input was processed into the output. The manifest file is only
+	* updated when save is called.
+	*
+	* @param input Path of the input file
+	* @param size long size of the input file in bytes
+	* @param hash String containing the content digest of the input file from hashFile
+	* @param obscure boolean that is true if the input was obscured and false if it was uncovered
+	* @param output Path of the output file
+	*/
+	public void record(Path input, long size, String hash, boolean obscure, Path output) {
+		String value = value(size, hash, obscure, output);
+		if (!value.equals(entries.put(key(input), value))) {
+			changed = true;
+		}
+	}
+
+	/**
+	* Writes the manifest to its file if any entry has changed. The entries are written to a
+	* temporary file that then replaces the manifest file, so an interrupted save never
+	* leaves a partly written manifest behind.
+	*
+	* @throws IOException thrown if the manifest file cannot be written
+	*/
+	public void save() throws IOException {
+		if (!changed) {
+			return;
+		}
+		List<String> lines = new ArrayList<>();
+		for (Map.Entry<String, String> entry : new TreeMap<>(entries).entrySet()) {
+			lines.add(entry.getKey() + SEPARATOR + entry.getValue());
+		}
+		Path absolute = file.toAbsolutePath();
+		Path temporary = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+		Files.write(temporary, lines);
+		Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		changed = false;
+	}
+
+	/**
+	* Returns the number of entries in the manifest.
+	*
+	* @return integer number of input files in the manifest
+	*/
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	* Returns the SHA-256 digest of the file's content as 64 hexadecimal digits. The file is
+	* memory mapped one region at a time and fed to the MessageDigest, which the JVM computes
+	* with the CPU's SHA instructions where they exist.
+	*
+	* @param file Path of the file to hash
+	* @return String containing the SHA-256 digest of the file's content
+	* @throws IOException thrown if the file cannot be opened or mapped
+	*/
+	public static String hashFile(Path file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);	//Every Java platform must provide SHA-256
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			for (long position = 0; position < size; position += MapChanger.MAP_REGION_SIZE) {
+				long region_size = Math.min(MapChanger.MAP_REGION_SIZE, size - position);
+				MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, region_size);
+				digest.update(region);
+			}
+		}
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	/**
+	* Returns the key an input file is stored under: its absolute, normalized path.
+	*
+	* @param input Path of the input file
+	* @return String containing the key for the input file
+	*/
+	private static String key(Path input) {
+		return input.toAbsolutePath().normalize().toString();
+	}
+
+	/**
+	* Returns the part of a manifest line after the input path.
+	*
+	* @param size long size of the input file in bytes
+	* @param hash String containing the content digest of the input file
+	* @param obscure boolean that is true if the input is obscured and false if it is uncovered
+	* @param output Path of the output file
+	* @return String containing the size, digest, action, and output path separated by tabs
+	*/
+	private static String value(long size, String hash, boolean obscure, Path output) {
+		return size + SEPARATOR + hash + SEPARATOR + (obscure ? "O" : "U") + SEPARATOR + key(output);
+	}
+}
@@ -0,0 +1,198 @@
+import java.util.*;		// This line is needed to use the Arrays object
+import java.util.concurrent.*;	// This line is needed to use the Flow and SubmissionPublisher objects
+import java.io.*;		// This line is needed to use the InputStream and OutputStream objects
+
+/**
+ * Pipeline stage that obscures or uncovers chunks of a map as they are pushed through it,
+ * so MapChanger can sit inside a larger java.util.concurrent.Flow pipeline without a whole
+ * map ever being staged on disk or in memory. Each chunk is an array of bytes that may hold
+ * any number of lines, or part of a line, because obscuring and uncovering work on each
+ * byte on its own. The stage only asks its publisher for the next chunk after the current
+ * one has been accepted downstream, so a slow subscriber slows the whole pipeline down
+ * instead of letting chunks pile up. Each stage is recorded in MapChangerStatistics as one
+ * input named "stream", from its subscription until it completes or fails.
+ *
+ * @author Chris D'Englere
+ */
+public class MapChangerProcessor extends SubmissionPublisher<byte[]> implements Flow.Processor<byte[], byte[]> {
+	public static final int CHUNK_SIZE = 1 << 16;	//Number of bytes (64 KB) read from a stream into each chunk
+
+	private final boolean obscure;
+	private Flow.Subscription subscription;
+	private MapChangerStatistics statistics;
+	private long bytes;			//Number of bytes transformed so far
+
+	/**
+	* Creates a stage that delivers chunks to its subscribers on the common ForkJoinPool
+	* with the default buffer size.
+	*
+	* @param obscure boolean that, if true, tells the stage to obscure the chunks, if false, to uncover them
+	*/
+	public MapChangerProcessor(boolean obscure) {
+		this.obscure = obscure;
+	}
+
+	/**
+	* Creates a stage that delivers chunks to its subscribers on the given executor and
+	* buffers at most max_buffer_capacity chunks for each subscriber.
+	*
+	* @param obscure boolean that, if true, tells the stage to obscure the chunks, if false, to uncover them
+	* @param executor Executor that delivers chunks to subscribers
+	* @param max_buffer_capacity integer number of chunks buffered for each subscriber
+	*/
+	public MapChangerProcessor(boolean obscure, Executor executor, int max_buffer_capacity) {
+		super(executor, max_buffer_capacity);
+		this.obscure = obscure;
+	}
+
+	/**
+	* Stores the subscription, starts recording the stream's statistics, and requests the
+	* first chunk.
+	*
+	* @param subscription Flow.Subscription to the publisher of untransformed chunks
+	*/
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		this.subscription = subscription;
+		statistics = MapChangerStatistics.startFile(obscure, "stream");
+		subscription.request(1);
+	}
+
+	/**
+	* Obscures or uncovers the chunk into a new array and publishes it. submit waits while a
+	* subscriber's buffer is full, and the next chunk is only requested after that.
+	*
+	* @param chunk byte array containing part of a map
+	*/
+	@Override
+	public void onNext(byte[] chunk) {
+		byte[] result = new byte[chunk.length];
+		int replaced;
+		if (obscure) {
+			replaced = MapChanger.obscureBytes(chunk, 0, result, 0, chunk.length);
+		} else {
+			replaced = MapChanger.uncoverBytes(chunk, 0, result, 0, chunk.length);
+		}
+		statistics.add(MapChanger.countLines(chunk, 0, chunk.length), replaced);
+		bytes += chunk.length;
+		submit(result);
+		subscription.request(1);
+	}
+
+	/**
+	* Records the statistics of the chunks transformed before the error, as onComplete does,
+	* and passes the error from the publisher on to the subscribers.
+	*
+	* @param error Throwable that ended the upstream publisher
+	*/
+	@Override
+	public void onError(Throwable error) {
+		statistics.finishFile(bytes);
+		closeExceptionally(error);
+	}
+
+	/**
+	* Records the stream's statistics and completes the subscribers after every chunk
+	* already published has been delivered.
+	*/
+	@Override
+	public void onComplete() {
+		statistics.finishFile(bytes);
+		close();
+	}
+
+	/**
+	* Reads the input stream in chunks, pushes them through a MapChangerProcessor, and writes
+	* the result to the output stream. Returns once everything has been written. Neither
+	* stream is closed.
+	*
+	* @param obscure boolean that, if true, tells the method to obscure the input, if false, to uncover the input
+	* @param input InputStream containing a map
+	* @param output OutputStream the obscured or uncovered map is written to
+	* @throws IOException thrown if the input cannot be read or the output cannot be written
+	*/
+	public static void transferStream(boolean obscure, InputStream input, OutputStream output) throws IOException {
+		OutputStreamSubscriber sink = new OutputStreamSubscriber(output);
+		MapChangerProcessor processor = new MapChangerProcessor(obscure);
+		processor.subscribe(sink);
+		try (SubmissionPublisher<byte[]> source = new SubmissionPublisher<>()) {
+			source.subscribe(processor);
+			byte[] buffer = new byte[CHUNK_SIZE];
+			int count = input.read(buffer);
+			while (count >= 0 && !sink.done.isDone()) {		//Stops reading early if writing has failed
+				if (count > 0) {
+					source.submit(Arrays.copyOf(buffer, count));
+				}
+				count = input.read(buffer);
+			}
+		}
+		try {
+			sink.done.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing the output");
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	* Subscriber at the end of a pipeline that writes each chunk to an output stream and
+	* flushes it when the pipeline completes. done completes when everything has been written,
+	* or completes exceptionally if the pipeline or a write fails.
+	*/
+	public static class OutputStreamSubscriber implements Flow.Subscriber<byte[]> {
+		public final CompletableFuture<Void> done = new CompletableFuture<>();
+
+		private final OutputStream output;
+		private Flow.Subscription subscription;
+
+		/**
+		* Creates a subscriber that writes to the given output stream.
+		*
+		* @param output OutputStream the chunks are written to
+		*/
+		public OutputStreamSubscriber(OutputStream output) {
+			this.output = output;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(1);
+		}
+
+		@Override
+		public void onNext(byte[] chunk) {
+			try {
+				output.write(chunk);
+				subscription.request(1);
+			}
+			catch (IOException e) {
+				subscription.cancel();
+				done.completeExceptionally(e);
+			}
+		}
+
+		@Override
+		public void onError(Throwable error) {
+			done.completeExceptionally(error);
+		}
+
+		@Override
+		public void onComplete() {
+			try {
+				output.flush();
+				done.complete(null);
+			}
+			catch (IOException e) {
+				done.completeExceptionally(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,230 @@
+import java.util.concurrent.atomic.*;	// This line is needed to use the LongAdder object
+import java.nio.file.*;	// This line is needed to use the Path object
+import jdk.jfr.*;		// This line is needed to use the Event object
+
+/**
+ * Throughput instrumentation for MapChanger. Every file MapChanger processes is recorded as a
+ * MapChanger.FileProcessed Java Flight Recorder event (input, action, bytes, lines, characters
+ * replaced, and duration) and added to cumulative counters, which can be read through the
+ * static getters or printed with getSummary. An instance holds the counts for one file while
+ * it is being processed and may be updated from several threads at once.
+ *
+ * @author Chris D'Englere
+ */
+public class MapChangerStatistics {
+	private static final LongAdder TOTAL_FILES = new LongAdder();
+	private static final LongAdder TOTAL_BYTES = new LongAdder();
+	private static final LongAdder TOTAL_LINES = new LongAdder();
+	private static final LongAdder TOTAL_REPLACED = new LongAdder();
+	private static final LongAdder TOTAL_DRAWS = new LongAdder();		//Random numbers drawn to choose obscure characters
+	private static final LongAdder TOTAL_NANOS = new LongAdder();		//Time spent processing files, summed over all threads
+	private static volatile long reset_time = System.nanoTime();
+
+	private final FileEvent event = new FileEvent();
+	private final long start_time = System.nanoTime();
+	private final LongAdder lines = new LongAdder();
+	private final LongAdder replaced = new LongAdder();
+
+	/**
+	* Flight Recorder event committed once for every file MapChanger processes.
+	*/
+	@Name("MapChanger.FileProcessed")
+	@Label("Map File Processed")
+	@Category("MapChanger")
+	@Description("A map file obscured or uncovered by MapChanger")
+	static class FileEvent extends Event {
+		@Label("Input")
+		String input;
+
+		@Label("Obscure")
+		@Description("True if the file was obscured, false if it was uncovered")
+		boolean obscure;
+
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+
+		@Label("Lines")
+		long lines;
+
+		@Label("Characters Replaced")
+		long replaced;
+	}
+
+	/**
+	* Creates the counts for one file and starts timing it.
+	*
+	* @param obscure boolean that is true if the file is being obscured and false if it is being uncovered
+	* @param input String naming the input
+	*/
+	private MapChangerStatistics(boolean obscure, String input) {
+		event.obscure = obscure;
+		event.input = input;
+		event.begin();
+	}
+
+	/**
+	* Starts recording a file. finishFile must be called once the file has been processed.
+	*
+	* @param obscure boolean that is true if the file is being obscured and false if it is being uncovered
+	* @param input Path of the input file
+	* @return MapChangerStatistics that the counts for the file are added to
+	*/
+	public static MapChangerStatistics startFile(boolean obscure, Path input) {
+		return new MapChangerStatistics(obscure, input.toString());
+	}
+
+	/**
+	* Starts recording input that is not a file, such as standard input.
+	*
+	* @param obscure boolean that is true if the input is being obscured and false if it is being uncovered
+	* @param input String naming the input
+	* @return MapChangerStatistics that the counts for the input are added to
+	*/
+	public static MapChangerStatistics startFile(boolean obscure, String input) {
+		return new MapChangerStatistics(obscure, input);
+	}
+
+	/**
+	* Adds the counts for one part of the file.
+	*
+	* @param part_lines long number of lines in the part
+	* @param part_replaced long number of characters replaced in the part
+	*/
+	public void add(long part_lines, long part_replaced) {
+		lines.add(part_lines);
+		replaced.add(part_replaced);
+	}
+
+	/**
+	* Stops timing the file, commits its Flight Recorder event, and adds its counts to the totals.
+	*
+	* @param bytes long number of bytes in the file
+	*/
+	public void finishFile(long bytes) {
+		event.end();
+		event.bytes = bytes;
+		event.lines = lines.sum();
+		event.replaced = replaced.sum();
+		event.commit();
+		TOTAL_FILES.increment();
+		TOTAL_BYTES.add(bytes);
+		TOTAL_LINES.add(event.lines);
+		TOTAL_REPLACED.add(event.replaced);
+		TOTAL_NANOS.add(System.nanoTime() - start_time);
+	}
+
+	/**
+	* Counts one random number drawn to choose obscure characters.
+	*/
+	public static void countObscureDraw() {
+		TOTAL_DRAWS.increment();
+	}
+
+	/**
+	* Sets every total back to zero and restarts the clock used for the rates.
+	*/
+	public static void reset() {
+		TOTAL_FILES.reset();
+		TOTAL_BYTES.reset();
+		TOTAL_LINES.reset();
+		TOTAL_REPLACED.reset();
+		TOTAL_DRAWS.reset();
+		TOTAL_NANOS.reset();
+		reset_time = System.nanoTime();
+	}
+
+	/**
+	* Returns the number of files processed since the last reset.
+	*
+	* @return long number of files
+	*/
+	public static long getFiles() {
+		return TOTAL_FILES.sum();
+	}
+
+	/**
+	* Returns the number of bytes processed since the last reset.
+	*
+	* @return long number of bytes
+	*/
+	public static long getBytes() {
+		return TOTAL_BYTES.sum();
+	}
+
+	/**
+	* Returns the number of lines processed since the last reset.
+	*
+	* @return long number of lines
+	*/
+	public static long getLines() {
+		return TOTAL_LINES.sum();
+	}
+
+	/**
+	* Returns the number of characters replaced (spaces obscured or obscure characters
+	* uncovered) since the last reset.
+	*
+	* @return long number of characters replaced
+	*/
+	public static long getReplaced() {
+		return TOTAL_REPLACED.sum();
+	}
+
+	/**
+	* Returns the number of random numbers drawn to choose obscure characters since the last reset.
+	*
+	* @return long number of random draws
+	*/
+	public static long getObscureDraws() {
+		return TOTAL_DRAWS.sum();
+	}
+
+	/**
+	* Returns the time spent processing files since the last reset, summed over all threads.
+	*
+	* @return double number of seconds
+	*/
+	public static double getProcessingSeconds() {
+		return TOTAL_NANOS.sum() / 1e9;
+	}
+
+	/**
+	* Returns the wall clock time since the last reset.
+	*
+	* @return double number of seconds
+	*/
+	public static double getElapsedSeconds() {
+		return (System.nanoTime() - reset_time) / 1e9;
+	}
+
+	/**
+	* Returns the bytes processed per second of wall clock time since the last reset.
+	*
+	* @return double number of bytes per second
+	*/
+	public static double getBytesPerSecond() {
+		return getBytes() / getElapsedSeconds();
+	}
+
+	/**
+	* Returns the lines processed per second of wall clock time since the last reset.
+	*
+	* @return double number of lines per second
+	*/
+	public static double getLinesPerSecond() {
+		return getLines() / getElapsedSeconds();
+	}
+
+	/**
+	* Returns a one line summary of the totals and rates since the last reset.
+	*
+	* @return String containing the summary
+	*/
+	public static String getSummary() {
+		return String.format("%d files, %d bytes, %d lines, %d characters replaced, %d obscure draws; "
+			+ "%.1f MB/s, %.0f lines/s (%.3f s processing over %.3f s elapsed)", getFiles(), getBytes(), getLines(),
+			getReplaced(), getObscureDraws(), getBytesPerSecond() / 1e6, getLinesPerSecond(), getProcessingSeconds(),
+			getElapsedSeconds());
+	}
+}
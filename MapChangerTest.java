@@ -1,72 +1,316 @@
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
 /**
- * White box test program that tests the isValidCharacter() and uncoverLine()
- * methods in the MapChanger class.
+ * White box tests for the MapChanger class: isValidCharacter(), uncoverLine(),
+ * obscureLine(), processFile(), and the byte-level file modes.
  *
  * @author Chris D'Englere
  */
 public class MapChangerTest {
-	
-	/**
-	* Executes the white box test cases for the isValidCharacter() and uncoverLine()
-	* methods in the MapChanger class.
-	*
-	* @param args command line arguments (not used)
-	*/
-	public static void main(String[] args) {  
-
-		boolean isValid = MapChanger.isValidCharacter('X');
-		System.out.println("Expected: true\t Actual: " + isValid);
-	
-		isValid = MapChanger.isValidCharacter('x');
-		System.out.println("Expected: false\t Actual: " + isValid);
-	
-		isValid = MapChanger.isValidCharacter('+');
-		System.out.println("Expected: true\t Actual: " + isValid);
-	
-		isValid = MapChanger.isValidCharacter('/');
-		System.out.println("Expected: true\t Actual: " + isValid);
-	
-		isValid = MapChanger.isValidCharacter('\\');
-		System.out.println("Expected: true\t Actual: " + isValid);
-	
-		isValid = MapChanger.isValidCharacter('~');
-		System.out.println("Expected: true\t Actual: " + isValid);
-	
-		isValid = MapChanger.isValidCharacter('!');
-		System.out.println("Expected: false\t Actual: " + isValid);
-		
-		isValid = MapChanger.isValidCharacter('@');
-		System.out.println("Expected: false\t Actual: " + isValid);
-		
-		isValid = MapChanger.isValidCharacter('$');
-		System.out.println("Expected: false\t Actual: " + isValid);
-    
-		String line = MapChanger.uncoverLine("++@#$%~~~/&*");
-		System.out.println("Expected: \"++    ~~~/  \"");
-		System.out.println("Actual:   \"" + line + "\"");
-		
-		line = MapChanger.uncoverLine("@^\\+*+#%XX");
-		System.out.println("Expected: \"  \\+ +  XX\"");
-		System.out.println("Actual:   \"" + line + "\"");
-		
-		line = MapChanger.uncoverLine("(&/\\/\\!@~~~~");
-		System.out.println("Expected: \"  /\\/\\  ~~~~\"");
-		System.out.println("Actual:   \"" + line + "\"");
-		
-		line = MapChanger.uncoverLine("=!$)++X~(~\\");
-		System.out.println("Expected: \"    ++X~ ~\\\"");
-		System.out.println("Actual:   \"" + line + "\"");
-		
-		line = MapChanger.uncoverLine("/\\/\\&@=++!X%)");
-		System.out.println("Expected: \"/\\/\\   ++ X  \"");
-		System.out.println("Actual:   \"" + line + "\"");
-		
-		line = MapChanger.uncoverLine("++++#(=!*~~~~@)^X");
-		System.out.println("Expected: \"++++     ~~~~   X\"");
-		System.out.println("Actual:   \"" + line + "\"");
-		
-		line = MapChanger.uncoverLine("~~^=@X!%$*)++/\\");
-		System.out.println("Expected: \"~~   X     ++/\\\"");
-		System.out.println("Actual:   \"" + line + "\"");
-	}
-}
\ No newline at end of file
+
+	@TempDir
+	Path directory;
+
+	@AfterEach
+	public void resetRandomSource() {
+		MapChanger.setRandomSource(null);
+	}
+
+	@Test
+	public void isValidCharacter() {
+		assertTrue(MapChanger.isValidCharacter('X'));
+		assertFalse(MapChanger.isValidCharacter('x'));
+		assertTrue(MapChanger.isValidCharacter('+'));
+		assertTrue(MapChanger.isValidCharacter('/'));
+		assertTrue(MapChanger.isValidCharacter('\\'));
+		assertTrue(MapChanger.isValidCharacter('~'));
+		assertFalse(MapChanger.isValidCharacter('!'));
+		assertFalse(MapChanger.isValidCharacter('@'));
+		assertFalse(MapChanger.isValidCharacter('$'));
+		assertFalse(MapChanger.isValidCharacter(' '));
+		assertFalse(MapChanger.isValidCharacter('Ř'));	//Outside the 256 entry table
+	}
+
+	@Test
+	public void uncoverLine() {
+		assertEquals("++    ~~~/  ", MapChanger.uncoverLine("++@#$%~~~/&*"));
+		assertEquals("  \\+ +  XX", MapChanger.uncoverLine("@^\\+*+#%XX"));
+		assertEquals("  /\\/\\  ~~~~", MapChanger.uncoverLine("(&/\\/\\!@~~~~"));
+		assertEquals("    ++X~ ~\\", MapChanger.uncoverLine("=!$)++X~(~\\"));
+		assertEquals("/\\/\\   ++ X  ", MapChanger.uncoverLine("/\\/\\&@=++!X%)"));
+		assertEquals("++++     ~~~~   X", MapChanger.uncoverLine("++++#(=!*~~~~@)^X"));
+		assertEquals("~~   X     ++/\\", MapChanger.uncoverLine("~~^=@X!%$*)++/\\"));
+		assertEquals("+ ~  X", MapChanger.uncoverLine("+\n~\r\nX"));		//A line has no line endings to keep
+		StringBuilder output = new StringBuilder();
+		assertEquals(3, MapChanger.uncoverLine("+\n~\r\nX", output));
+		assertEquals("+ ~  X", output.toString());
+		char[] chars = "+\n~\r\n@".toCharArray();
+		assertEquals(1, MapChanger.uncoverChars(chars, 0, chars, 0, chars.length));
+		assertEquals("+\n~\r\n ", new String(chars));		//The kernels keep them
+	}
+
+	@Test
+	public void obscureLine() {
+		String line = "+ +  ~X   \\/";
+		String obscured = MapChanger.obscureLine(line);
+		assertEquals(line.length(), obscured.length());
+		for (int i = 0; i < line.length(); i++) {
+			if (line.charAt(i) == ' ') {
+				assertTrue(MapChanger.OBSCURE_CHARACTERS.indexOf(obscured.charAt(i)) >= 0);
+			} else {
+				assertEquals(line.charAt(i), obscured.charAt(i));
+			}
+		}
+		assertEquals(line, MapChanger.uncoverLine(obscured));
+	}
+
+	@Test
+	public void kernelsMatchStringMethods() {
+		String line = "=!$)++X~(~\\ @#";
+		byte[] bytes = line.getBytes();
+		assertEquals(7, MapChanger.uncoverBytes(bytes, 0, bytes, 0, bytes.length));
+		assertEquals(MapChanger.uncoverLine(line), new String(bytes));
+
+		StringBuilder output = new StringBuilder("> ");
+		MapChanger.uncoverLine(line, output);
+		assertEquals("> " + MapChanger.uncoverLine(line), output.toString());
+	}
+
+	@Test
+	public void vectorKernelsMatchScalarKernels() {
+		assumeTrue(MapChanger.isVectorAvailable(), "needs --add-modules jdk.incubator.vector");
+		byte[] map = new byte[1003];		//Not a multiple of any vector length, so the scalar tail runs too
+		Random random = new Random(3);
+		for (int i = 0; i < map.length; i++) {
+			map[i] = (byte) " +/\\~X!@#\n".charAt(random.nextInt(10));
+		}
+		byte[] scalar = new byte[map.length];
+		byte[] vector = new byte[map.length];
+		assertEquals(MapChanger.uncoverBytesScalar(map, 0, scalar, 0, map.length),
+			MapChangerVector.uncoverBytes(map, 0, vector, 0, map.length));
+		assertArrayEquals(scalar, vector);
+
+		MapChanger.obscureBytesScalar(map, 0, scalar, 0, map.length, new SplittableRandom(4));
+		MapChangerVector.obscureBytes(map, 0, vector, 0, map.length, new SplittableRandom(4));
+		assertArrayEquals(scalar, vector);
+		MapChangerVector.obscureBytes(map, 0, map, 0, map.length, new SplittableRandom(4));
+		assertArrayEquals(scalar, map);
+	}
+
+	@Test
+	public void seededObscuringIsReproducible() {
+		String line = "  +  X     ~~      /\\    ";
+		MapChanger.setRandomSeed(42);
+		String first = MapChanger.obscureLine(line);
+		MapChanger.setRandomSeed(42);
+		assertEquals(first, MapChanger.obscureLine(line));
+	}
+
+	@Test
+	public void fillObscureCharacters() {
+		char[] characters = new char[1000];
+		MapChanger.fillObscureCharacters(characters, 0, characters.length, new SplittableRandom(1));
+		Set<Character> seen = new HashSet<>();
+		for (char ch : characters) {
+			assertTrue(MapChanger.OBSCURE_CHARACTERS.indexOf(ch) >= 0);
+			seen.add(ch);
+		}
+		assertEquals(MapChanger.OBSCURE_CHARACTERS.length(), seen.size());
+	}
+
+	@Test
+	public void processFile() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		MapChanger.processFile(false, new Scanner("++@#\n~X!!\n"), new PrintStream(bytes, true));
+		assertEquals("++  " + System.lineSeparator() + "~X  " + System.lineSeparator(), bytes.toString());
+	}
+
+	@Test
+	public void processMappedFileRoundTrip() throws IOException {
+		Path map = directory.resolve("map.txt");
+		Files.writeString(map, "+ + X\r\n ~~ \n\\/  ");
+		Path obscured = directory.resolve("obscured.txt");
+		Path uncovered = directory.resolve("uncovered.txt");
+		MapChanger.processMappedFile(true, map, obscured);
+		MapChanger.processMappedFile(false, obscured, uncovered);
+		assertFalse(Files.readString(obscured).contains(" "));
+		assertEquals(Files.readString(map), Files.readString(uncovered));
+		assertThrows(IOException.class, () -> MapChanger.processMappedFile(false, map, map));
+	}
+
+	@Test
+	public void parallelMatchesSequential() throws IOException {
+		Random random = new Random(5);
+		StringBuilder map = new StringBuilder();
+		while (map.length() < 3 * MapChanger.MIN_CHUNK_SIZE) {
+			for (int i = random.nextInt(60); i > 0; i--) {
+				map.append(" +/\\~X!@#".charAt(random.nextInt(9)));
+			}
+			map.append('\n');
+		}
+		Path input = directory.resolve("input.txt");
+		Files.writeString(input, map);
+		Path sequential = directory.resolve("sequential.txt");
+		Path parallel = directory.resolve("parallel.txt");
+		MapChanger.processMappedFile(false, input, sequential);
+		MapChanger.processMappedFileParallel(false, input, parallel, 4);
+		assertArrayEquals(Files.readAllBytes(sequential), Files.readAllBytes(parallel));
+
+		MapChanger.setRandomSeed(9);
+		MapChanger.processMappedFileParallel(true, input, sequential, 4);
+		MapChanger.setRandomSeed(9);
+		MapChanger.processMappedFileParallel(true, input, parallel, 4);
+		assertArrayEquals(Files.readAllBytes(sequential), Files.readAllBytes(parallel));
+	}
+
+	@Test
+	public void seededBatchIsReproducible() throws IOException {
+		Path input = Files.createDirectories(directory.resolve("input"));
+		for (int i = 0; i < 6; i++) {
+			Files.writeString(input.resolve("map" + i + ".txt"), "+ +  ~X   \\/\n  /\\  ~~   X  \n".repeat(50 + i));
+		}
+		String[] outputs = {"first", "second", "single"};
+		for (String output : outputs) {
+			MapChanger.setRandomSeed(21);
+			MapChanger.processBatch(new String[] {"O", input.toString(), directory.resolve(output).toString(),
+				"-j", output.equals("single") ? "1" : "6"});
+		}
+		for (int i = 0; i < 6; i++) {
+			byte[] first = Files.readAllBytes(directory.resolve("first/map" + i + ".txt"));
+			assertArrayEquals(first, Files.readAllBytes(directory.resolve("second/map" + i + ".txt")));
+			assertArrayEquals(first, Files.readAllBytes(directory.resolve("single/map" + i + ".txt")));
+		}
+	}
+
+	@Test
+	public void runTasksRethrowsOriginalFailure() {
+		IOException io_failure = new IOException("unreadable");
+		IllegalArgumentException argument_failure = new IllegalArgumentException("invalid");
+		List<ForkJoinTask<Void>> io_tasks = List.of(ForkJoinTask.adapt(() -> null), ForkJoinTask.adapt(() -> {
+			throw io_failure;
+		}));
+		assertSame(io_failure, assertThrows(IOException.class, () -> MapChanger.runTasks(2, io_tasks)));
+		List<ForkJoinTask<Void>> argument_tasks = List.of(ForkJoinTask.adapt(() -> {
+			throw argument_failure;
+		}));
+		assertSame(argument_failure, assertThrows(IllegalArgumentException.class, () -> MapChanger.runTasks(2, argument_tasks)));
+	}
+
+	@Test
+	public void findBatchFiles() throws IOException {
+		Path maps = Files.createDirectories(directory.resolve("maps/north"));
+		Files.writeString(maps.resolve("a.txt"), "+");
+		Files.writeString(maps.resolve("b.md"), "+");
+		Path output = directory.resolve("out");
+		Map<Path, Path> files = MapChanger.findBatchFiles(directory.resolve("maps").toString(), output);
+		assertEquals(2, files.size());
+		assertEquals(output.resolve("north/a.txt"), files.get(maps.resolve("a.txt")));
+
+		files = MapChanger.findBatchFiles(directory.resolve("maps") + "/**.txt", output);
+		assertEquals(List.of(maps.resolve("a.txt")), new ArrayList<>(files.keySet()));
+
+		Path nested = Files.createDirectories(directory.resolve("maps/obscured/north"));
+		Files.writeString(nested.resolve("a.txt"), "+");		//Output of an earlier run
+		files = MapChanger.findBatchFiles(directory.resolve("maps").toString(), directory.resolve("maps/./obscured"));
+		assertEquals(List.of(maps.resolve("a.txt"), maps.resolve("b.md")), new ArrayList<>(files.keySet()));
+	}
+
+	@Test
+	public void manifestSkipsUnchangedInputs() throws IOException {
+		Path input = directory.resolve("map.txt");
+		Path output = directory.resolve("uncovered.txt");
+		Path file = directory.resolve("manifest.tsv");
+		Files.writeString(input, "+@X");
+		String hash = MapChangerManifest.hashFile(input);
+		MapChangerManifest manifest = MapChangerManifest.load(file);
+		assertFalse(manifest.isUpToDate(input, 3, hash, false, output));
+		MapChanger.processMappedFile(false, input, output);
+		manifest.record(input, 3, hash, false, output);
+		manifest.save();
+
+		manifest = MapChangerManifest.load(file);
+		assertTrue(manifest.isUpToDate(input, 3, hash, false, output));
+		assertFalse(manifest.isUpToDate(input, 3, hash, true, output));
+		Files.writeString(input, "+#X");
+		assertFalse(manifest.isUpToDate(input, 3, MapChangerManifest.hashFile(input), false, output));
+		Files.writeString(input, "abc");
+		assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", MapChangerManifest.hashFile(input));
+		Files.delete(output);
+		assertFalse(manifest.isUpToDate(input, 3, hash, false, output));
+	}
+
+	@Test
+	public void processorStreamsChunks() throws IOException {
+		byte[] map = new byte[3 * MapChangerProcessor.CHUNK_SIZE + 17];
+		Random random = new Random(8);
+		for (int i = 0; i < map.length; i++) {
+			map[i] = (byte) " +/\\~X!@#\n".charAt(random.nextInt(10));
+		}
+		ByteArrayOutputStream uncovered = new ByteArrayOutputStream();
+		MapChangerProcessor.transferStream(false, new ByteArrayInputStream(map), uncovered);
+		byte[] expected = map.clone();
+		MapChanger.uncoverBytes(expected, 0, expected, 0, expected.length);
+		assertArrayEquals(expected, uncovered.toByteArray());
+
+		ByteArrayOutputStream obscured = new ByteArrayOutputStream();
+		MapChangerProcessor.transferStream(true, new ByteArrayInputStream(expected), obscured);
+		uncovered.reset();
+		MapChangerProcessor.transferStream(false, new ByteArrayInputStream(obscured.toByteArray()), uncovered);
+		assertArrayEquals(expected, uncovered.toByteArray());
+	}
+
+	@Test
+	public void statisticsCountProcessedFiles() throws IOException {
+		Path map = directory.resolve("map.txt");
+		Path output = directory.resolve("output.txt");
+		Files.writeString(map, "+ + X\n ~~ \n@@\n");
+		MapChangerStatistics.reset();
+		MapChanger.processMappedFile(true, map, output);
+		MapChanger.processMappedFile(false, output, map);
+		assertEquals(2, MapChangerStatistics.getFiles());
+		assertEquals(2 * 14, MapChangerStatistics.getBytes());
+		assertEquals(2 * 3, MapChangerStatistics.getLines());
+		assertEquals(4 + 6, MapChangerStatistics.getReplaced());	//Four spaces obscured, then those four and the two @ uncovered
+		assertTrue(MapChangerStatistics.getObscureDraws() >= 1);
+
+		MapChangerStatistics.reset();
+		String text = "+ \u00e9\r\n@X\n\u2603";		//2 + 2 + 2, 3, and 3 UTF-8 bytes
+		MapChanger.processFile(false, new Scanner(text), new PrintStream(new ByteArrayOutputStream()));
+		assertEquals(12, MapChangerStatistics.getBytes());
+		assertEquals(3, MapChangerStatistics.getLines());
+		byte[] stream = "+ + \n@@\n".getBytes(StandardCharsets.US_ASCII);
+		MapChangerProcessor.transferStream(true, new ByteArrayInputStream(stream), new ByteArrayOutputStream());
+		assertEquals(2, MapChangerStatistics.getFiles());
+		assertEquals(12 + stream.length, MapChangerStatistics.getBytes());
+		assertEquals(3 + 2, MapChangerStatistics.getLines());
+		assertEquals(3 + 2, MapChangerStatistics.getReplaced());	//é, @, and the snowman uncovered, then two spaces obscured
+
+		MapChangerStatistics.reset();
+		MapChangerProcessor failing = new MapChangerProcessor(false);
+		failing.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+			}
+
+			@Override
+			public void cancel() {
+			}
+		});
+		failing.onNext(stream);
+		failing.onError(new IOException("Upstream failed"));
+		assertEquals(1, MapChangerStatistics.getFiles());		//A failed stream is recorded too
+		assertEquals(stream.length, MapChangerStatistics.getBytes());
+		assertEquals(2, MapChangerStatistics.getLines());
+		assertTrue(failing.isClosed());
+	}
+}
@@ -0,0 +1,142 @@
+import java.util.random.*;	// This line is needed to use the RandomGenerator object
+import jdk.incubator.vector.*;	// This line is needed to use the ByteVector object
+
+/**
+ * SIMD versions of the MapChanger byte kernels built on the incubating Vector API. They
+ * compare a whole vector of bytes at once instead of one byte at a time. MapChanger only
+ * calls this class after checking that the Vector API loads and that these kernels agree
+ * with the scalar ones, which needs the JVM to be started with
+ * --add-modules jdk.incubator.vector. Otherwise the scalar kernels are used.
+ *
+ * @author Chris D'Englere
+ */
+public class MapChangerVector {
+	private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;	//Widest vector shape the CPU supports
+	private static final byte VALID_0 = (byte) MapChanger.VALID_CHARACTERS.charAt(0);	//The five valid characters: +/\~X
+	private static final byte VALID_1 = (byte) MapChanger.VALID_CHARACTERS.charAt(1);
+	private static final byte VALID_2 = (byte) MapChanger.VALID_CHARACTERS.charAt(2);
+	private static final byte VALID_3 = (byte) MapChanger.VALID_CHARACTERS.charAt(3);
+	private static final byte VALID_4 = (byte) MapChanger.VALID_CHARACTERS.charAt(4);
+
+	/**
+	* Uncovers length bytes of src starting at src_offset and writes them to dst starting at
+	* dst_offset. Each vector of bytes is compared with the valid characters and line endings,
+	* and a blend keeps those bytes and puts a space everywhere else. The bytes left over after
+	* the last full vector are uncovered by the scalar kernel.
+	*
+	* @param src byte array containing the input to be uncovered
+	* @param src_offset integer index of the first byte of input
+	* @param dst byte array the uncovered bytes are written to
+	* @param dst_offset integer index in dst of the first uncovered byte
+	* @param length integer number of bytes to uncover
+	* @return integer number of bytes that were replaced with spaces
+	*/
+	public static int uncoverBytes(byte[] src, int src_offset, byte[] dst, int dst_offset, int length) {
+		ByteVector spaces = ByteVector.broadcast(SPECIES, (byte) ' ');
+		int replaced = 0;
+		int i = 0;
+		int bound = SPECIES.loopBound(length);
+		for (; i < bound; i += SPECIES.length()) {
+			ByteVector bytes = ByteVector.fromArray(SPECIES, src, src_offset + i);
+			VectorMask<Byte> kept = bytes.eq(VALID_0).or(bytes.eq(VALID_1)).or(bytes.eq(VALID_2))
+				.or(bytes.eq(VALID_3)).or(bytes.eq(VALID_4)).or(bytes.eq((byte) '\n')).or(bytes.eq((byte) '\r'));
+			replaced += SPECIES.length() - kept.or(bytes.eq((byte) ' ')).trueCount();
+			spaces.blend(bytes, kept).intoArray(dst, dst_offset + i);
+		}
+		return replaced + MapChanger.uncoverBytesScalar(src, src_offset + i, dst, dst_offset + i, length - i);
+	}
+
+	/**
+	* Obscures length bytes of src starting at src_offset and writes them to dst starting at
+	* dst_offset. Each vector of bytes is tested for spaces at once; a vector without a space
+	* is copied whole and only the vectors that have a space are obscured one byte at a time.
+	*
+	* @param src byte array containing the input to be obscured
+	* @param src_offset integer index of the first byte of input
+	* @param dst byte array the obscured bytes are written to
+	* @param dst_offset integer index in dst of the first obscured byte
+	* @param length integer number of bytes to obscure
+	* @param random RandomGenerator used to choose obscure characters
+	* @return integer number of spaces that were replaced
+	*/
+	public static int obscureBytes(byte[] src, int src_offset, byte[] dst, int dst_offset, int length, RandomGenerator random) {
+		int replaced = 0;
+		byte[] pool = new byte[MapChanger.OBSCURE_DIGITS_PER_DRAW];	//Obscure characters from one random draw
+		int next = pool.length;		//Index in pool of the next unused character
+		int i = 0;
+		int bound = SPECIES.loopBound(length);
+		for (; i < length; i += SPECIES.length()) {
+			int vector_end = Math.min(i + SPECIES.length(), length);
+			if (i < bound) {
+				ByteVector bytes = ByteVector.fromArray(SPECIES, src, src_offset + i);
+				if (!bytes.eq((byte) ' ').anyTrue()) {
+					bytes.intoArray(dst, dst_offset + i);
+					continue;
+				}
+			}
+			for (int j = i; j < vector_end; j++) {
+				byte b = src[src_offset + j];
+				if (b == ' ') {
+					if (next == pool.length) {
+						MapChanger.fillObscureCharacters(pool, 0, pool.length, random);
+						next = 0;
+					}
+					b = pool[next++];
+					replaced++;
+				}
+				dst[dst_offset + j] = b;
+			}
+		}
+		return replaced;
+	}
+
+	/**
+	* Returns the number of newlines in length bytes of src starting at offset. Whole vectors
+	* are compared with '\n' and the matches counted at once.
+	*
+	* @param src byte array that is counted
+	* @param offset integer index of the first byte
+	* @param length integer number of bytes to count
+	* @return integer number of '\n' bytes
+	*/
+	public static int countLines(byte[] src, int offset, int length) {
+		int lines = 0;
+		int i = 0;
+		int bound = SPECIES.loopBound(length);
+		for (; i < bound; i += SPECIES.length()) {
+			lines += ByteVector.fromArray(SPECIES, src, offset + i).eq((byte) '\n').trueCount();
+		}
+		for (; i < length; i++) {
+			if (src[offset + i] == '\n') {
+				lines++;
+			}
+		}
+		return lines;
+	}
+
+	/**
+	* Returns the index of the first space in src from from (inclusive) to to (exclusive),
+	* or to if there is no space. Whole vectors are tested at once.
+	*
+	* @param src byte array that is searched
+	* @param from integer index the search starts at
+	* @param to integer index the search stops before
+	* @return integer index of the first space, or to if there is none
+	*/
+	public static int indexOfSpace(byte[] src, int from, int to) {
+		int i = from;
+		int bound = from + SPECIES.loopBound(to - from);
+		for (; i < bound; i += SPECIES.length()) {
+			VectorMask<Byte> spaces = ByteVector.fromArray(SPECIES, src, i).eq((byte) ' ');
+			if (spaces.anyTrue()) {
+				return i + spaces.firstTrue();
+			}
+		}
+		for (; i < to; i++) {
+			if (src[i] == ' ') {
+				return i;
+			}
+		}
+		return to;
+	}
+}
@@ -0,0 +1,335 @@
+import java.util.*;		// This line is needed to use the Arrays and List objects
+import java.nio.charset.*;	// This line is needed to use the StandardCharsets object
+
+/**
+ * Movie data read from a MovieSelector input file, stored one array (column) per field.
+ * Row i of the catalog is made of element i of each array. The titles are kept as UTF-8
+ * in one MovieTitles arena, years and lengths are shorts, each rating is a one byte code
+ * (its index in RATINGS), and each genre string such as "100100" is packed into a one byte
+ * bitmask where bit MovieSelector.ACT_INDEX through bit MovieSelector.ROM_INDEX is set for
+ * every '1'. A catalog is built row by row with a MovieCatalog.Builder, which parses each
+ * tab separated row straight from the bytes of the file. Creating a catalog also builds
+ * its MovieYearIndex, MovieTitleIndex, and MovieStatistics.
+ *
+ * @author Chris D'Englere
+ */
+public class MovieCatalog {
+	public static final int FIELDS = 5;				//Number of tab separated fields in each row: title, year, length, rating, genre
+	public static final String[] RATINGS = {"G", "PG", "PG-13", "R", "NC-17", "NR"};	//Ratings in the order of their codes
+	public static final byte UNKNOWN_RATING = -1;	//Code stored for a rating that is not in RATINGS
+	public static final int GENRES = 6;				//Number of genre flags in each genre string
+
+	public final MovieTitles title;
+	public final short[] year;
+	public final short[] length;
+	public final byte[] rating;
+	public final byte[] genre;
+	public final MovieYearIndex year_index;
+	public final MovieTitleIndex title_index;
+	public final MovieStatistics statistics;
+
+	/**
+	* Creates a catalog from columns that all have the same length and indexes it by year
+	* and by title.
+	*
+	* @param title MovieTitles containing the title data
+	* @param year short array containing the year data
+	* @param length short array containing the length data
+	* @param rating byte array containing the rating codes
+	* @param genre byte array containing the genre bitmasks
+	*/
+	public MovieCatalog(MovieTitles title, short[] year, short[] length, byte[] rating, byte[] genre) {
+		this(title, year, length, rating, genre, new MovieTitleIndex(title));
+	}
+
+	/**
+	* Creates a catalog from columns that all have the same length and a title index that
+	* was already built for the titles, indexes it by year, and counts its values.
+	*
+	* @param title MovieTitles containing the title data
+	* @param year short array containing the year data
+	* @param length short array containing the length data
+	* @param rating byte array containing the rating codes
+	* @param genre byte array containing the genre bitmasks
+	* @param title_index MovieTitleIndex for the titles
+	*/
+	public MovieCatalog(MovieTitles title, short[] year, short[] length, byte[] rating, byte[] genre, MovieTitleIndex title_index) {
+		this.title = title;
+		this.year = year;
+		this.length = length;
+		this.rating = rating;
+		this.genre = genre;
+		this.year_index = new MovieYearIndex(year);
+		this.title_index = title_index;
+		this.statistics = new MovieStatistics(length, rating, genre);
+	}
+
+	/**
+	* Returns the number of movies in the catalog.
+	*
+	* @return integer number of rows
+	*/
+	public int size() {
+		return year.length;
+	}
+
+	/**
+	* Returns a new catalog holding this catalog's rows followed by the rows in the builder,
+	* such as rows appended to the movie file since it was loaded. This catalog is not
+	* changed, so it can still be searched while the new one is made. The title index is
+	* extended with the new titles instead of being built again, but every column and bucket
+	* is still copied, so the cost grows with the size of the whole catalog.
+	*
+	* @param rows MovieCatalog.Builder containing the rows to add
+	* @return MovieCatalog containing the rows of both
+	* @throws IllegalArgumentException thrown if the titles of both do not fit in a MovieTitles arena
+	*/
+	public MovieCatalog append(Builder rows) {
+		int size = size();
+		int total = size + rows.size;
+		short[] all_year = Arrays.copyOf(year, total);
+		short[] all_length = Arrays.copyOf(length, total);
+		byte[] all_rating = Arrays.copyOf(rating, total);
+		byte[] all_genre = Arrays.copyOf(genre, total);
+		System.arraycopy(rows.year, 0, all_year, size, rows.size);
+		System.arraycopy(rows.length, 0, all_length, size, rows.size);
+		System.arraycopy(rows.rating, 0, all_rating, size, rows.size);
+		System.arraycopy(rows.genre, 0, all_genre, size, rows.size);
+		MovieTitles added_title = rows.title.build();
+		return new MovieCatalog(title.append(added_title), all_year, all_length, all_rating, all_genre,
+			title_index.append(added_title));
+	}
+
+	/**
+	* Returns the code for a rating: its index in RATINGS, or UNKNOWN_RATING if the rating
+	* is not one of them.
+	*
+	* @param rating String containing a rating such as PG-13
+	* @return byte code for the rating
+	*/
+	public static byte getRatingCode(String rating) {
+		for (int i = 0; i < RATINGS.length; i++) {
+			if (RATINGS[i].equals(rating)) {
+				return (byte) i;
+			}
+		}
+		return UNKNOWN_RATING;
+	}
+
+	/**
+	* Returns the bitmask that has only the bit for the genre at genre_index set, for
+	* example MovieSelector.COM_INDEX for comedy.
+	*
+	* @param genre_index integer position of the genre in the genre string
+	* @return byte bitmask for the genre
+	*/
+	public static byte getGenreMask(int genre_index) {
+		return (byte) (1 << genre_index);
+	}
+
+	/**
+	* Collects rows for a MovieCatalog. The columns start small and double in size whenever
+	* they fill up, so the input file only has to be read once and its number of rows does
+	* not need to be known in advance. Titles are copied into a MovieTitles.Builder.
+	*/
+	public static class Builder {
+		public static final int INITIAL_CAPACITY = 1024;	//Number of rows the columns can hold before they first grow
+
+		private MovieTitles.Builder title = new MovieTitles.Builder();
+		private short[] year = new short[INITIAL_CAPACITY];
+		private short[] length = new short[INITIAL_CAPACITY];
+		private byte[] rating = new byte[INITIAL_CAPACITY];
+		private byte[] genre = new byte[INITIAL_CAPACITY];
+		private int size = 0;
+
+		/**
+		* Parses one row from data, from start (inclusive) to end (exclusive), and adds it to
+		* the catalog. The row holds the five fields separated by tabs and may end with a
+		* carriage return, which is ignored. The bytes of the title are copied as they are,
+		* ratings are turned into codes, and genre strings into bitmasks, without creating a
+		* String for any of them.
+		*
+		* @param data byte array containing the row
+		* @param start integer index of the first byte of the row
+		* @param end integer index one past the last byte of the row, not counting the newline
+		* @throws IllegalArgumentException thrown if the row does not have five fields, a number cannot be read as a short, or the titles are too long to store
+		*/
+		public void addRow(byte[] data, int start, int end) {
+			if (end > start && data[end - 1] == '\r') {
+				end--;
+			}
+			int tab_1 = indexOf(data, (byte) '\t', start, end);
+			int tab_2 = indexOf(data, (byte) '\t', tab_1 + 1, end);
+			int tab_3 = indexOf(data, (byte) '\t', tab_2 + 1, end);
+			int tab_4 = indexOf(data, (byte) '\t', tab_3 + 1, end);
+			if (tab_4 == end) {
+				throw new IllegalArgumentException("Expected " + FIELDS + " tab separated fields: "
+					+ new String(data, start, end - start, StandardCharsets.UTF_8));
+			}
+			if (size == year.length) {
+				grow();
+			}
+			year[size] = parseShort(data, tab_1 + 1, tab_2);
+			length[size] = parseShort(data, tab_2 + 1, tab_3);
+			rating[size] = parseRating(data, tab_3 + 1, tab_4);
+			genre[size] = parseGenre(data, tab_4 + 1, end);
+			title.add(data, start, tab_1);
+			size++;
+		}
+
+		/**
+		* Returns the number of rows added so far.
+		*
+		* @return integer number of rows
+		*/
+		public int size() {
+			return size;
+		}
+
+		/**
+		* Returns a catalog holding the rows added so far. The columns are trimmed to the
+		* number of rows.
+		*
+		* @return MovieCatalog containing the rows
+		*/
+		public MovieCatalog build() {
+			return new MovieCatalog(title.build(), Arrays.copyOf(year, size), Arrays.copyOf(length, size),
+				Arrays.copyOf(rating, size), Arrays.copyOf(genre, size));
+		}
+
+		/**
+		* Returns a catalog holding the rows of every builder, in the order of the list. Each
+		* column is copied once into an array of the exact size.
+		*
+		* @param builders List of MovieCatalog.Builder objects, such as one per chunk of a file
+		* @return MovieCatalog containing the rows
+		* @throws IllegalArgumentException thrown if the titles of every builder do not fit in a MovieTitles arena
+		*/
+		public static MovieCatalog build(List<Builder> builders) {
+			int rows = 0;
+			long title_bytes = 0;
+			for (Builder builder : builders) {
+				rows += builder.size;
+				title_bytes += builder.title.getArenaSize();
+			}
+			MovieTitles.Builder title = new MovieTitles.Builder(rows, (int) Math.min(title_bytes, MovieTitles.MAX_ARENA_SIZE));
+			short[] year = new short[rows];
+			short[] length = new short[rows];
+			byte[] rating = new byte[rows];
+			byte[] genre = new byte[rows];
+			int position = 0;
+			for (Builder builder : builders) {
+				title.add(builder.title);
+				System.arraycopy(builder.year, 0, year, position, builder.size);
+				System.arraycopy(builder.length, 0, length, position, builder.size);
+				System.arraycopy(builder.rating, 0, rating, position, builder.size);
+				System.arraycopy(builder.genre, 0, genre, position, builder.size);
+				position += builder.size;
+			}
+			return new MovieCatalog(title.build(), year, length, rating, genre);
+		}
+
+		/**
+		* Doubles the capacity of every column.
+		*/
+		private void grow() {
+			int capacity = year.length * 2;
+			year = Arrays.copyOf(year, capacity);
+			length = Arrays.copyOf(length, capacity);
+			rating = Arrays.copyOf(rating, capacity);
+			genre = Arrays.copyOf(genre, capacity);
+		}
+
+		/**
+		* Returns the index of the first b in data from from (inclusive) to end (exclusive), or
+		* end if there is none.
+		*
+		* @param data byte array that is searched
+		* @param b byte that is searched for
+		* @param from integer index the search starts at
+		* @param end integer index the search stops before
+		* @return integer index of the first b, or end if there is none
+		*/
+		static int indexOf(byte[] data, byte b, int from, int end) {
+			for (int i = from; i < end; i++) {
+				if (data[i] == b) {
+					return i;
+				}
+			}
+			return end;
+		}
+
+		/**
+		* Reads a decimal integer, optionally preceded by a minus sign, from data between start
+		* (inclusive) and end (exclusive) without creating a String.
+		*
+		* @param data byte array containing the digits
+		* @param start integer index of the first character
+		* @param end integer index one past the last character
+		* @return short value of the digits
+		* @throws IllegalArgumentException thrown if the field is empty, is not a number, or does not fit in a short
+		*/
+		private static short parseShort(byte[] data, int start, int end) {
+			boolean negative = start < end && data[start] == '-';
+			int i = negative ? start + 1 : start;
+			if (i == end || end - i > 5) {		//A short has at most five digits
+				throw new IllegalArgumentException("Invalid number: " + new String(data, start, end - start, StandardCharsets.UTF_8));
+			}
+			int value = 0;
+			for (; i < end; i++) {
+				int digit = data[i] - '0';
+				if (digit < 0 || digit > 9) {
+					throw new IllegalArgumentException("Invalid number: " + new String(data, start, end - start, StandardCharsets.UTF_8));
+				}
+				value = value * 10 + digit;
+			}
+			if (value > Short.MAX_VALUE) {
+				throw new IllegalArgumentException("Number too large: " + new String(data, start, end - start, StandardCharsets.UTF_8));
+			}
+			return (short) (negative ? -value : value);
+		}
+
+		/**
+		* Returns the code of the rating stored in data between start (inclusive) and end
+		* (exclusive), or UNKNOWN_RATING if it is not one of RATINGS.
+		*
+		* @param data byte array containing the rating
+		* @param start integer index of the first character
+		* @param end integer index one past the last character
+		* @return byte code for the rating
+		*/
+		private static byte parseRating(byte[] data, int start, int end) {
+			for (int code = 0; code < RATINGS.length; code++) {
+				String name = RATINGS[code];
+				boolean matches = name.length() == end - start;
+				for (int i = 0; matches && i < name.length(); i++) {
+					matches = data[start + i] == name.charAt(i);
+				}
+				if (matches) {
+					return (byte) code;
+				}
+			}
+			return UNKNOWN_RATING;
+		}
+
+		/**
+		* Returns the bitmask for the genre string stored in data between start (inclusive)
+		* and end (exclusive). Bit i is set if character i is a '1'. Characters after the
+		* first GENRES are ignored.
+		*
+		* @param data byte array containing the genre string
+		* @param start integer index of the first character
+		* @param end integer index one past the last character
+		* @return byte bitmask for the genres
+		*/
+		private static byte parseGenre(byte[] data, int start, int end) {
+			int mask = 0;
+			for (int i = 0; i < GENRES && start + i < end; i++) {
+				if (data[start + i] == '1') {
+					mask |= 1 << i;
+				}
+			}
+			return (byte) mask;
+		}
+	}
+}
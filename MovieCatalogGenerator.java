@@ -0,0 +1,170 @@
+import java.util.*;		// This line is needed to use the SplittableRandom object
+import java.io.*;		// This line is needed to use the Writer object
+import java.nio.charset.*;	// This line is needed to use the StandardCharsets object
+import java.nio.file.*;	// This line is needed to use the Path object
+
+/**
+ * Writes synthetic movie files for MovieSelector in the usual format: a header row, then
+ * one tab separated row per movie with a title, year, length, rating, and six digit genre
+ * string. The same seed and number of rows always give the same file, so catalogs from
+ * 10 thousand to 50 million rows can be recreated anywhere to measure MovieSelector
+ * against. Titles are made of a few words, some with accented letters, and may end in a
+ * sequel number. Later years, ratings such as PG-13 and R, and lengths around 100 minutes
+ * are more common, and each movie has one or more genres.
+ *
+ * @author Chris D'Englere
+ */
+public class MovieCatalogGenerator {
+	public static final long DEFAULT_SEED = 42;		//Seed used when none is given on the command line
+	public static final int LAST_YEAR = 2025;		//Latest year a generated movie is released in
+	public static final int MAX_LENGTH = 300;		//Longest generated movie (minutes)
+	public static final int WRITE_BUFFER_SIZE = 1 << 20;	//Number of characters (1 M) buffered before the file is written
+	public static final String HEADER = "Title\tYear\tLength\tRating\tGenre\n";
+	public static final String[] TITLE_WORDS = {"The", "Star", "Wars", "Love", "Night", "Day", "Man", "Woman", "King",
+		"Queen", "Dark", "Light", "City", "Story", "Return", "Last", "First", "Lost", "Found", "Ghost", "River", "Blue",
+		"Red", "Golden", "Secret", "Island", "Dream", "War", "Heart", "Fire", "Ice", "Road", "Home", "Summer", "Winter",
+		"Caf\u00e9", "Se\u00f1or", "Am\u00e9lie", "\u00dcber", "No\u00ebl", "of", "and", "in", "a"};
+	public static final int[] RATING_WEIGHTS = {10, 20, 30, 30, 3, 7};	//Relative frequency of each of MovieCatalog.RATINGS
+
+	/**
+	* Writes a synthetic movie file.
+	*
+	* @param args command line arguments: filename rows [seed]
+	*/
+	public static void main(String[] args) {
+		if (args.length < 2 || args.length > 3) {
+			System.out.println("Usage: java MovieCatalogGenerator filename rows [seed]");
+			System.exit(1);
+		}
+		try {
+			long rows = Long.parseLong(args[1]);
+			long seed = args.length == 3 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+			generate(Paths.get(args[0]), rows, seed);
+		}
+		catch (NumberFormatException e) {
+			System.out.println("Usage: java MovieCatalogGenerator filename rows [seed]");
+			System.exit(1);
+		}
+		catch (IOException e) {
+			System.out.printf("Unable to write output file: %s.\n", args[0]);
+			System.exit(1);
+		}
+	}
+
+	/**
+	* Writes a movie file with the given number of rows generated from the seed.
+	*
+	* @param file Path of the file to write, which is replaced if it exists
+	* @param rows long number of movies
+	* @param seed long seed for the random generator
+	* @throws IOException thrown if the file cannot be written
+	*/
+	public static void generate(Path file, long rows, long seed) throws IOException {
+		SplittableRandom random = new SplittableRandom(seed);
+		int rating_total = Arrays.stream(RATING_WEIGHTS).sum();
+		try (Writer output = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8),
+			WRITE_BUFFER_SIZE)) {
+			output.write(HEADER);
+			StringBuilder row = new StringBuilder();
+			for (long i = 0; i < rows; i++) {
+				row.setLength(0);
+				appendTitle(row, random);
+				row.append('\t').append(nextYear(random));
+				row.append('\t').append(nextLength(random));
+				row.append('\t').append(MovieCatalog.RATINGS[nextRating(random, rating_total)]);
+				row.append('\t');
+				appendGenre(row, random);
+				row.append('\n');
+				output.append(row);
+			}
+		}
+	}
+
+	/**
+	* Appends a title of one to four words, which ends in a sequel number one time in ten.
+	*
+	* @param row StringBuilder the title is appended to
+	* @param random SplittableRandom used to choose the title
+	*/
+	private static void appendTitle(StringBuilder row, SplittableRandom random) {
+		int words = 1 + random.nextInt(4);
+		for (int i = 0; i < words; i++) {
+			if (i > 0) {
+				row.append(' ');
+			}
+			row.append(TITLE_WORDS[random.nextInt(TITLE_WORDS.length)]);
+		}
+		if (random.nextInt(10) == 0) {
+			row.append(' ').append(2 + random.nextInt(8));
+		}
+	}
+
+	/**
+	* Returns a year from MovieSelector.MIN_YEAR to LAST_YEAR. Taking the square root of a
+	* uniform number makes later years more common, as they are in real catalogs.
+	*
+	* @param random SplittableRandom used to choose the year
+	* @return integer year
+	*/
+	private static int nextYear(SplittableRandom random) {
+		int years = LAST_YEAR - MovieSelector.MIN_YEAR + 1;
+		return MovieSelector.MIN_YEAR + Math.min(years - 1, (int) (years * Math.sqrt(random.nextDouble())));
+	}
+
+	/**
+	* Returns a length from MovieSelector.MIN_LENGTH to MAX_LENGTH minutes. The sum of four
+	* uniform numbers gives a bell shaped spread around 100 minutes.
+	*
+	* @param random SplittableRandom used to choose the length
+	* @return integer length in minutes
+	*/
+	private static int nextLength(SplittableRandom random) {
+		int length = 20;
+		for (int i = 0; i < 4; i++) {
+			length += random.nextInt(41);
+		}
+		if (random.nextInt(50) == 0) {
+			length = MovieSelector.MIN_LENGTH + random.nextInt(MAX_LENGTH);		//A few shorts and epics
+		}
+		return length;
+	}
+
+	/**
+	* Returns the index in MovieCatalog.RATINGS of a rating chosen by RATING_WEIGHTS.
+	*
+	* @param random SplittableRandom used to choose the rating
+	* @param total integer sum of RATING_WEIGHTS
+	* @return integer index of the rating
+	*/
+	private static int nextRating(SplittableRandom random, int total) {
+		int value = random.nextInt(total);
+		int index = 0;
+		while (value >= RATING_WEIGHTS[index]) {
+			value -= RATING_WEIGHTS[index];
+			index++;
+		}
+		return index;
+	}
+
+	/**
+	* Appends a six digit genre string in which each genre is set one time in four. If no
+	* genre was set, one is set at random.
+	*
+	* @param row StringBuilder the genre string is appended to
+	* @param random SplittableRandom used to choose the genres
+	*/
+	private static void appendGenre(StringBuilder row, SplittableRandom random) {
+		int mask = 0;
+		for (int i = 0; i < MovieCatalog.GENRES; i++) {
+			if (random.nextInt(4) == 0) {
+				mask |= 1 << i;
+			}
+		}
+		if (mask == 0) {
+			mask = 1 << random.nextInt(MovieCatalog.GENRES);
+		}
+		for (int i = 0; i < MovieCatalog.GENRES; i++) {
+			row.append((mask & (1 << i)) != 0 ? '1' : '0');
+		}
+	}
+}
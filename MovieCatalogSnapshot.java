@@ -0,0 +1,349 @@
+import java.io.*;		// This line is needed to use the IOException object
+import java.nio.*;		// This line is needed to use the ByteBuffer object
+import java.nio.channels.*;	// This line is needed to use the FileChannel object
+import java.nio.file.*;	// This line is needed to use the Path object
+import java.nio.file.attribute.*;	// This line is needed to use the BasicFileAttributes object
+
+/**
+ * Binary copy of a parsed MovieCatalog, saved next to its movie file as filename.snapshot
+ * so that later runs can skip parsing the text. The snapshot starts with a header that
+ * records the size and modification time of the movie file it was made from, followed by
+ * one section per column: years and lengths as shorts, rating codes and genre bitmasks as
+ * bytes, the offset of each title, the buckets of the catalog's MovieTitleIndex, the
+ * catalog's MovieTitles arena, and finally the offsets and arena of the index's lowercased
+ * titles. Every number is little endian. Each section is memory mapped and copied into its
+ * array in bulk transfers of up to MAP_REGION_SIZE bytes, so neither the text nor the title index has to be processed
+ * again, and no String is created for a title. A snapshot whose header does not match the
+ * movie file, or whose sections are not consistent with each other, is ignored.
+ *
+ * @author Chris D'Englere
+ */
+public class MovieCatalogSnapshot {
+	public static final String EXTENSION = ".snapshot";	//Added to the movie file's name to give the snapshot's name
+	public static final int MAGIC = 0x4D565343;		//"MVSC", identifies a snapshot file
+	public static final int VERSION = 3;			//Changed whenever the layout changes
+	public static final int HEADER_SIZE = 56;		//Bytes before the first section
+
+	/**
+	* Returns the path of the snapshot for a movie file.
+	*
+	* @param source Path of the movie file
+	* @return Path of its snapshot
+	*/
+	public static Path getSnapshotPath(Path source) {
+		Path absolute = source.toAbsolutePath();
+		return absolute.resolveSibling(absolute.getFileName() + EXTENSION);
+	}
+
+	/**
+	* Loads the snapshot of a movie file. Returns null if there is no snapshot, it was not
+	* made from a file with the given size and modification time, or its sections are not
+	* consistent (an offset out of order, a row or rating code out of range), in which case
+	* the movie file has to be parsed.
+	*
+	* @param source Path of the movie file
+	* @param attributes BasicFileAttributes of the movie file
+	* @return MovieCatalog containing the data from the snapshot, or null if the snapshot cannot be used
+	* @throws IOException thrown if the snapshot exists but cannot be read
+	*/
+	public static MovieCatalog load(Path source, BasicFileAttributes attributes) throws IOException {
+		Path file = getSnapshotPath(source);
+		if (!Files.exists(file)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) {
+				return null;
+			}
+			ByteBuffer header = map(channel, 0, HEADER_SIZE);
+			int rows = header.getInt(24);
+			int buckets = header.getInt(28);
+			long arena_size = header.getLong(32);
+			long postings = header.getLong(40);
+			long lowercase_size = header.getLong(48);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getLong(8) != attributes.size()
+				|| header.getLong(16) != attributes.lastModifiedTime().toMillis() || rows < 0 || rows > Integer.MAX_VALUE - 8
+				|| buckets <= 0 || Integer.bitCount(buckets) != 1 || buckets > MovieTitleIndex.MAX_BUCKETS
+				|| arena_size < 0 || arena_size > MovieTitles.MAX_ARENA_SIZE || postings < 0 || postings > Integer.MAX_VALUE
+				|| lowercase_size < 0 || lowercase_size > MovieTitles.MAX_ARENA_SIZE
+				|| channel.size() != getArenaStart(rows, buckets, postings) + arena_size + 4L * (rows + 1) + lowercase_size) {
+				return null;
+			}
+			short[] year = new short[rows];
+			short[] length = new short[rows];
+			byte[] rating = new byte[rows];
+			byte[] genre = new byte[rows];
+			int[] offsets = new int[rows + 1];
+			int[] index_offsets = new int[buckets + 1];
+			int[] index_rows = new int[(int) postings];
+			byte[] arena = new byte[(int) arena_size];
+			int[] lowercase_offsets = new int[rows + 1];
+			byte[] lowercase_arena = new byte[(int) lowercase_size];
+			long position = HEADER_SIZE;
+			position = read(channel, position, year);
+			position = read(channel, position, length);
+			position = read(channel, position, rating, rows);
+			position = read(channel, position, genre, rows);
+			position = read(channel, position, offsets);
+			position = read(channel, position, index_offsets);
+			position = read(channel, position, index_rows);
+			position = read(channel, position, arena, arena.length);
+			position = read(channel, position, lowercase_offsets);
+			read(channel, position, lowercase_arena, lowercase_arena.length);
+			if (!isOrdered(offsets, arena_size) || !isOrdered(lowercase_offsets, lowercase_size)
+				|| !isOrdered(index_offsets, postings) || !hasValidRows(index_offsets, index_rows, rows)) {
+				return null;
+			}
+			for (int i = 0; i < rows; i++) {
+				if ((rating[i] < 0 && rating[i] != MovieCatalog.UNKNOWN_RATING) || rating[i] >= MovieCatalog.RATINGS.length) {
+					return null;
+				}
+			}
+			MovieTitles title = new MovieTitles(arena, offsets);
+			MovieTitles lowercase = new MovieTitles(lowercase_arena, lowercase_offsets);
+			return new MovieCatalog(title, year, length, rating, genre, new MovieTitleIndex(lowercase, index_offsets, index_rows));
+		}
+	}
+
+	/**
+	* Returns whether an array of offsets starts at 0, never decreases, and ends at end.
+	*
+	* @param offsets integer array containing offsets, such as the start of each title
+	* @param end long value the last offset must equal
+	* @return boolean set as true if the offsets are in order and false otherwise
+	*/
+	private static boolean isOrdered(int[] offsets, long end) {
+		if (offsets[0] != 0 || offsets[offsets.length - 1] != end) {
+			return false;
+		}
+		for (int i = 1; i < offsets.length; i++) {
+			if (offsets[i - 1] > offsets[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	* Returns whether every bucket of a title index holds rows of the catalog in increasing
+	* order, as MovieTitleIndex expects when it intersects buckets.
+	*
+	* @param index_offsets integer array containing the start of each bucket, already checked by isOrdered
+	* @param index_rows integer array containing the rows of every bucket
+	* @param rows integer number of rows in the catalog
+	* @return boolean set as true if every row is valid and false otherwise
+	*/
+	private static boolean hasValidRows(int[] index_offsets, int[] index_rows, int rows) {
+		for (int bucket = 0; bucket < index_offsets.length - 1; bucket++) {
+			int previous = -1;
+			for (int i = index_offsets[bucket]; i < index_offsets[bucket + 1]; i++) {
+				if (index_rows[i] <= previous || index_rows[i] >= rows) {
+					return false;
+				}
+				previous = index_rows[i];
+			}
+		}
+		return true;
+	}
+
+	/**
+	* Saves a snapshot of a catalog parsed from a movie file that had the given size and
+	* modification time. The snapshot is written to a temporary file that then replaces any
+	* earlier snapshot, so an interrupted save never leaves a partly written snapshot behind.
+	*
+	* @param catalog MovieCatalog parsed from the movie file
+	* @param source Path of the movie file
+	* @param attributes BasicFileAttributes of the movie file, read before it was parsed
+	* @throws IOException thrown if the snapshot cannot be written
+	*/
+	public static void save(MovieCatalog catalog, Path source, BasicFileAttributes attributes) throws IOException {
+		Path file = getSnapshotPath(source);
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		int rows = catalog.size();
+		int[] index_offsets = catalog.title_index.getOffsets();
+		int[] index_rows = catalog.title_index.getRows();
+		int buckets = index_offsets.length - 1;
+		int[] offsets = catalog.title.getOffsets();
+		int arena_size = catalog.title.getArenaSize();
+		MovieTitles lowercase = catalog.title_index.getLowercase();
+		int lowercase_size = lowercase.getArenaSize();
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+			StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long position = HEADER_SIZE;
+			position = write(channel, position, catalog.year);
+			position = write(channel, position, catalog.length);
+			position = write(channel, position, catalog.rating, rows);
+			position = write(channel, position, catalog.genre, rows);
+			position = write(channel, position, offsets);
+			position = write(channel, position, index_offsets);
+			position = write(channel, position, index_rows);
+			position = write(channel, position, catalog.title.getArena(), arena_size);
+			position = write(channel, position, lowercase.getOffsets());
+			write(channel, position, lowercase.getArena(), lowercase_size);
+			ByteBuffer header = mapForWriting(channel, 0, HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putLong(attributes.size()).putLong(attributes.lastModifiedTime().toMillis())
+				.putInt(rows).putInt(buckets).putLong(arena_size).putLong(index_rows.length).putLong(lowercase_size);
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	* Returns the offset of the title arena: the size of the header and every section before it.
+	*
+	* @param rows integer number of rows in the catalog
+	* @param buckets integer number of buckets in the title index
+	* @param postings long number of rows stored in the title index's buckets
+	* @return long offset of the first byte of the arena
+	*/
+	private static long getArenaStart(int rows, int buckets, long postings) {
+		return HEADER_SIZE + 2L * rows + 2L * rows + rows + rows + 4L * (rows + 1) + 4L * (buckets + 1) + 4L * postings;
+	}
+
+	/**
+	* Copies a section of a snapshot into an array of shorts, mapping at most
+	* MapChanger.MAP_REGION_SIZE bytes at a time so a section may be larger than 2 GB.
+	*
+	* @param channel FileChannel of the snapshot
+	* @param position long offset of the section
+	* @param array short array the section is copied into, filled completely
+	* @return long offset of the byte after the section
+	* @throws IOException thrown if the section cannot be mapped
+	*/
+	private static long read(FileChannel channel, long position, short[] array) throws IOException {
+		for (int i = 0; i < array.length; ) {
+			int count = Math.min(array.length - i, MapChanger.MAP_REGION_SIZE / Short.BYTES);
+			map(channel, position, (long) Short.BYTES * count).asShortBuffer().get(array, i, count);
+			position += (long) Short.BYTES * count;
+			i += count;
+		}
+		return position;
+	}
+
+	/**
+	* Copies a section of a snapshot into an array of integers, mapping at most
+	* MapChanger.MAP_REGION_SIZE bytes at a time.
+	*
+	* @param channel FileChannel of the snapshot
+	* @param position long offset of the section
+	* @param array integer array the section is copied into, filled completely
+	* @return long offset of the byte after the section
+	* @throws IOException thrown if the section cannot be mapped
+	*/
+	private static long read(FileChannel channel, long position, int[] array) throws IOException {
+		for (int i = 0; i < array.length; ) {
+			int count = Math.min(array.length - i, MapChanger.MAP_REGION_SIZE / Integer.BYTES);
+			map(channel, position, (long) Integer.BYTES * count).asIntBuffer().get(array, i, count);
+			position += (long) Integer.BYTES * count;
+			i += count;
+		}
+		return position;
+	}
+
+	/**
+	* Copies a section of a snapshot into the start of a byte array, mapping at most
+	* MapChanger.MAP_REGION_SIZE bytes at a time.
+	*
+	* @param channel FileChannel of the snapshot
+	* @param position long offset of the section
+	* @param array byte array the section is copied into
+	* @param size integer number of bytes in the section
+	* @return long offset of the byte after the section
+	* @throws IOException thrown if the section cannot be mapped
+	*/
+	private static long read(FileChannel channel, long position, byte[] array, int size) throws IOException {
+		for (int i = 0; i < size; ) {
+			int count = Math.min(size - i, MapChanger.MAP_REGION_SIZE);
+			map(channel, position, count).get(array, i, count);
+			position += count;
+			i += count;
+		}
+		return position;
+	}
+
+	/**
+	* Writes an array of shorts as a section of a snapshot, mapping at most
+	* MapChanger.MAP_REGION_SIZE bytes at a time.
+	*
+	* @param channel FileChannel of the snapshot
+	* @param position long offset of the section
+	* @param array short array written completely
+	* @return long offset of the byte after the section
+	* @throws IOException thrown if the section cannot be mapped
+	*/
+	private static long write(FileChannel channel, long position, short[] array) throws IOException {
+		for (int i = 0; i < array.length; ) {
+			int count = Math.min(array.length - i, MapChanger.MAP_REGION_SIZE / Short.BYTES);
+			mapForWriting(channel, position, (long) Short.BYTES * count).asShortBuffer().put(array, i, count);
+			position += (long) Short.BYTES * count;
+			i += count;
+		}
+		return position;
+	}
+
+	/**
+	* Writes an array of integers as a section of a snapshot, mapping at most
+	* MapChanger.MAP_REGION_SIZE bytes at a time.
+	*
+	* @param channel FileChannel of the snapshot
+	* @param position long offset of the section
+	* @param array integer array written completely
+	* @return long offset of the byte after the section
+	* @throws IOException thrown if the section cannot be mapped
+	*/
+	private static long write(FileChannel channel, long position, int[] array) throws IOException {
+		for (int i = 0; i < array.length; ) {
+			int count = Math.min(array.length - i, MapChanger.MAP_REGION_SIZE / Integer.BYTES);
+			mapForWriting(channel, position, (long) Integer.BYTES * count).asIntBuffer().put(array, i, count);
+			position += (long) Integer.BYTES * count;
+			i += count;
+		}
+		return position;
+	}
+
+	/**
+	* Writes the start of a byte array as a section of a snapshot, mapping at most
+	* MapChanger.MAP_REGION_SIZE bytes at a time.
+	*
+	* @param channel FileChannel of the snapshot
+	* @param position long offset of the section
+	* @param array byte array containing the section
+	* @param size integer number of bytes in the section
+	* @return long offset of the byte after the section
+	* @throws IOException thrown if the section cannot be mapped
+	*/
+	private static long write(FileChannel channel, long position, byte[] array, int size) throws IOException {
+		for (int i = 0; i < size; ) {
+			int count = Math.min(size - i, MapChanger.MAP_REGION_SIZE);
+			mapForWriting(channel, position, count).put(array, i, count);
+			position += count;
+			i += count;
+		}
+		return position;
+	}
+
+	/**
+	* Maps part of a snapshot for reading, little endian.
+	*
+	* @param channel FileChannel of the snapshot
+	* @param position long offset of the first byte
+	* @param size long number of bytes
+	* @return ByteBuffer containing the bytes
+	* @throws IOException thrown if the bytes cannot be mapped
+	*/
+	private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	* Maps part of a snapshot for writing, little endian.
+	*
+	* @param channel FileChannel of the snapshot
+	* @param position long offset of the first byte
+	* @param size long number of bytes
+	* @return ByteBuffer the bytes are written to
+	* @throws IOException thrown if the bytes cannot be mapped
+	*/
+	private static ByteBuffer mapForWriting(FileChannel channel, long position, long size) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_WRITE, position, size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+}
@@ -0,0 +1,228 @@
+import java.io.*;		// This line is needed to use the IOException object
+import java.nio.*;		// This line is needed to use the ByteBuffer object
+import java.nio.channels.*;	// This line is needed to use the FileChannel object
+import java.nio.file.*;	// This line is needed to use the WatchService object
+import java.nio.file.attribute.*;	// This line is needed to use the BasicFileAttributes object
+
+/**
+ * Keeps a MovieCatalog up to date with rows appended to its movie file. A WatchService on
+ * the file's directory reports when the file changes. The bytes added since the last
+ * refresh are then parsed up to the last complete row, and a new catalog holding the old
+ * rows followed by the new ones is published. Catalogs are never changed once published,
+ * so searches run against whichever catalog getCatalog returned without taking any lock.
+ * If the file gets smaller or is replaced by a different file, it is loaded again in full.
+ * The file is expected to only grow by whole rows being appended to it; if it starts out
+ * empty, its first rows are taken as the header.
+ * <p>
+ * Each refresh costs time in proportion to the whole catalog and not just the new rows,
+ * because MovieCatalog.append copies every column and the title index's buckets into new
+ * arrays, and the new catalog builds its year index and statistics again. The watcher
+ * therefore suits files that grow in occasional batches; a file that gets a row at a time
+ * from a busy writer should be batched by the writer first.
+ *
+ * @author Chris D'Englere
+ */
+public class MovieCatalogWatcher implements Closeable {
+	public static final int SCAN_BUFFER_SIZE = 1 << 16;	//Number of bytes (64 KB) read at a time when looking for the last newline
+
+	private final Path file;
+	private volatile MovieCatalog catalog;
+	private long position;			//Number of bytes of the file that are in the catalog
+	private Object file_key;		//Identifies the file that was loaded, so a replaced file is noticed
+	private WatchService watch_service;
+	private Thread thread;
+
+	/**
+	* Creates a watcher for a catalog that holds the first position bytes of the file.
+	* Watching only begins once start is called.
+	*
+	* @param file Path of the movie file
+	* @param catalog MovieCatalog containing the data from the file
+	* @param position long number of bytes of the file that are in the catalog
+	* @param file_key Object from BasicFileAttributes.fileKey for the file, or null if it is not known
+	*/
+	public MovieCatalogWatcher(Path file, MovieCatalog catalog, long position, Object file_key) {
+		this.file = file.toAbsolutePath();
+		this.catalog = catalog;
+		this.position = position;
+		this.file_key = file_key;
+	}
+
+	/**
+	* Opens the movie file with MovieSelector.openCatalog and returns a watcher for it. Only
+	* the rows up to the last newline are loaded, so a row that is still being written is
+	* left for a later refresh.
+	*
+	* @param file Path of the movie file
+	* @return MovieCatalogWatcher holding the catalog for the file
+	* @throws IOException thrown if the file cannot be read
+	* @throws IllegalArgumentException thrown if a row does not contain valid movie data
+	*/
+	public static MovieCatalogWatcher open(Path file) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		long end = findRowsEnd(file, attributes.size());
+		return new MovieCatalogWatcher(file, MovieSelector.openCatalog(file, attributes, end), end, attributes.fileKey());
+	}
+
+	/**
+	* Returns the most recently published catalog.
+	*
+	* @return MovieCatalog containing the data from the file
+	*/
+	public MovieCatalog getCatalog() {
+		return catalog;
+	}
+
+	/**
+	* Returns the number of bytes of the file that are in the current catalog.
+	*
+	* @return long number of bytes
+	*/
+	public synchronized long getPosition() {
+		return position;
+	}
+
+	/**
+	* Brings the catalog up to date with the file. Rows appended since the last refresh are
+	* parsed and published in a new catalog, skipping the header if the catalog held none of
+	* the file yet. An unfinished row at the end of the file is left
+	* until a later refresh. If the file is smaller than before or is a different file, it
+	* is loaded again up to its last newline.
+	*
+	* @return boolean set as true if a new catalog was published and false otherwise
+	* @throws IOException thrown if the file cannot be read
+	* @throws IllegalArgumentException thrown if a new row does not contain valid movie data
+	*/
+	public synchronized boolean refresh() throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		long size = attributes.size();
+		if (size < position || (file_key != null && !file_key.equals(attributes.fileKey()))) {
+			long end = findRowsEnd(file, size);
+			catalog = MovieSelector.openCatalog(file, attributes, end);
+			position = end;
+			file_key = attributes.fileKey();
+			return true;
+		}
+		if (size == position) {
+			return false;
+		}
+		try (FileChannel input = FileChannel.open(file, StandardOpenOption.READ)) {
+			long end = findRowsEnd(input, position, size);
+			if (end == position) {
+				return false;
+			}
+			MovieCatalog.Builder rows = new MovieCatalog.Builder();
+			MovieSelector.parseRange(input, position, end, position == 0 ? MovieSelector.HEADER_ROWS : 0, rows);
+			catalog = catalog.append(rows);
+			position = end;
+			return true;
+		}
+	}
+
+	/**
+	* Starts a daemon thread that calls refresh whenever the file is created or modified.
+	* Errors while refreshing are output to the console, and the thread keeps watching.
+	*
+	* @throws IOException thrown if the file's directory cannot be watched
+	*/
+	public synchronized void start() throws IOException {
+		if (thread != null) {
+			return;
+		}
+		watch_service = file.getFileSystem().newWatchService();
+		file.getParent().register(watch_service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		thread = new Thread(this::watch, "MovieCatalogWatcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	* Stops watching the file. The current catalog can still be used.
+	*
+	* @throws IOException thrown if the WatchService cannot be closed
+	*/
+	@Override
+	public synchronized void close() throws IOException {
+		if (watch_service != null) {
+			watch_service.close();
+			thread.interrupt();
+		}
+	}
+
+	/**
+	* Waits for changes to the file's directory and refreshes the catalog when the file is
+	* one of the changed entries, until the WatchService is closed.
+	*/
+	private void watch() {
+		try {
+			while (true) {
+				WatchKey key = watch_service.take();
+				boolean changed = false;
+				for (WatchEvent<?> event : key.pollEvents()) {
+					changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context());
+				}
+				key.reset();
+				if (changed) {
+					try {
+						refresh();
+					}
+					catch (IOException e) {
+						System.out.printf("Unable to access input file: %s.\n", file);
+					}
+					catch (IllegalArgumentException e) {
+						System.out.println(e.getMessage());
+					}
+				}
+			}
+		}
+		catch (InterruptedException | ClosedWatchServiceException e) {
+			//The watcher was closed
+		}
+	}
+
+	/**
+	* Returns the position just after the last newline in the first size bytes of the file,
+	* or 0 if there is none.
+	*
+	* @param file Path of the movie file
+	* @param size long number of bytes of the file to search
+	* @return long position one past the last newline, or 0
+	* @throws IOException thrown if the file cannot be read
+	*/
+	private static long findRowsEnd(Path file, long size) throws IOException {
+		try (FileChannel input = FileChannel.open(file, StandardOpenOption.READ)) {
+			return findRowsEnd(input, 0, size);
+		}
+	}
+
+	/**
+	* Returns the position just after the last newline between start (inclusive) and end
+	* (exclusive) of the input channel, or start if there is none. The channel is read
+	* backward from end so that only the last row has to be searched.
+	*
+	* @param input FileChannel for the movie file, opened for reading
+	* @param start long position where the search stops
+	* @param end long position where the search begins
+	* @return long position one past the last newline, or start
+	* @throws IOException thrown if the channel cannot be read
+	*/
+	private static long findRowsEnd(FileChannel input, long start, long end) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+		long block_end = end;
+		while (block_end > start) {
+			long block_start = Math.max(start, block_end - SCAN_BUFFER_SIZE);
+			buffer.clear().limit((int) (block_end - block_start));
+			int count = 0;
+			while (buffer.hasRemaining() && count >= 0) {		//Reads until the block is full or the file ends
+				count = input.read(buffer, block_start + buffer.position());
+			}
+			for (int i = buffer.position() - 1; i >= 0; i--) {
+				if (buffer.get(i) == '\n') {
+					return block_start + i + 1;
+				}
+			}
+			block_end = block_start;
+		}
+		return start;
+	}
+}
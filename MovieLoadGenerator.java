@@ -0,0 +1,193 @@
+import java.util.*;		// This line is needed to use the Arrays object
+import java.util.concurrent.*;	// This line is needed to use the ExecutorService object
+import java.io.*;		// This line is needed to use the IOException object
+import java.net.*;		// This line is needed to use the URI object
+import java.net.http.*;	// This line is needed to use the HttpClient object
+import java.time.*;		// This line is needed to use the Duration object
+
+/**
+ * Load generator for MovieServer. A number of clients, each on its own thread from
+ * MapChanger.newThreadPerTaskExecutor (a platform thread on Java 17, a virtual thread on
+ * Java 21 or later), send requests back to back for a fixed time. Each
+ * request is picked at random from a mix of year, year range, title, and genre searches,
+ * seeded so that a run can be repeated. The latency of every request is recorded, and the
+ * run is summarized as requests per second and the 50th and 99th percentile latencies.
+ *
+ * @author Chris D'Englere
+ */
+public class MovieLoadGenerator {
+	public static final int DEFAULT_CLIENTS = 100;		//Number of clients used when none is given on the command line
+	public static final int DEFAULT_SECONDS = 10;		//Length of a run when none is given on the command line
+	public static final String[] TITLE_WORDS = {"the", "star", "love", "night", "man", "war", "day", "city", "king", "dark"};
+	public static final String[] GENRE_LETTERS = {"A", "N", "C", "D", "O", "R"};
+
+	/**
+	* Summary of one run.
+	*/
+	public static class Report {
+		public final long requests;		//Number of requests answered with status 200
+		public final long errors;		//Number of requests that failed or were answered with another status
+		public final double seconds;	//Wall clock length of the run
+		public final long[] latencies;	//Latency of each successful request in nanoseconds, sorted
+
+		/**
+		* Creates a report from the sorted latencies of the successful requests.
+		*
+		* @param latencies long array containing the sorted latencies in nanoseconds
+		* @param errors long number of failed requests
+		* @param seconds double length of the run in seconds
+		*/
+		public Report(long[] latencies, long errors, double seconds) {
+			this.requests = latencies.length;
+			this.errors = errors;
+			this.seconds = seconds;
+			this.latencies = latencies;
+		}
+
+		/**
+		* Returns the latency that the given fraction of requests were at or below.
+		*
+		* @param fraction double between 0 and 1, such as 0.99 for the 99th percentile
+		* @return double latency in milliseconds, or 0 if no request succeeded
+		*/
+		public double getPercentile(double fraction) {
+			if (latencies.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(fraction * latencies.length) - 1;
+			return latencies[Math.max(0, Math.min(index, latencies.length - 1))] / 1e6;
+		}
+
+		/**
+		* Returns the successful requests per second.
+		*
+		* @return double number of requests per second
+		*/
+		public double getRequestsPerSecond() {
+			return requests / seconds;
+		}
+
+		/**
+		* Returns a one line summary of the run.
+		*
+		* @return String containing the summary
+		*/
+		public String getSummary() {
+			return String.format("%d requests, %d errors in %.1f s: %.0f requests/s, p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+				requests, errors, seconds, getRequestsPerSecond(), getPercentile(0.5), getPercentile(0.99), getPercentile(1));
+		}
+	}
+
+	/**
+	* Runs the load generator against a server and prints the summary.
+	*
+	* @param args command line arguments: url [clients] [seconds]
+	*/
+	public static void main(String[] args) {
+		if (args.length < 1 || args.length > 3) {
+			System.out.println("Usage: java MovieLoadGenerator url [clients] [seconds]");
+			System.exit(1);
+		}
+		try {
+			int clients = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CLIENTS;
+			int seconds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SECONDS;
+			System.out.println(run(URI.create(args[0]), clients, Duration.ofSeconds(seconds), 42).getSummary());
+		}
+		catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
+		catch (InterruptedException e) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	* Sends requests from the given number of clients for the given time and returns the
+	* report. Each client gets its own random generator split from the seed.
+	*
+	* @param base URI of the server, such as http://localhost:8080/
+	* @param clients integer number of clients sending requests at the same time
+	* @param duration Duration of the run
+	* @param seed long seed for choosing the requests
+	* @return Report summarizing the run
+	* @throws InterruptedException thrown if the thread is interrupted while waiting for the clients
+	*/
+	public static Report run(URI base, int clients, Duration duration, long seed) throws InterruptedException {
+		if (clients < 1) {
+			throw new IllegalArgumentException("clients must be at least 1: " + clients);
+		}
+		HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+		SplittableRandom random = new SplittableRandom(seed);
+		ExecutorService executor = MapChanger.newThreadPerTaskExecutor();
+		List<Future<long[]>> results = new ArrayList<>();
+		long[] errors = new long[clients];
+		long start = System.nanoTime();
+		long deadline = start + duration.toNanos();
+		for (int i = 0; i < clients; i++) {
+			SplittableRandom client_random = random.split();
+			int number = i;
+			results.add(executor.submit(() -> {
+				long[] latencies = new long[1024];
+				int count = 0;
+				while (System.nanoTime() < deadline) {
+					HttpRequest request = HttpRequest.newBuilder(base.resolve(nextRequest(client_random))).GET().build();
+					long sent = System.nanoTime();
+					try {
+						HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+						if (response.statusCode() == 200) {
+							if (count == latencies.length) {
+								latencies = Arrays.copyOf(latencies, count * 2);
+							}
+							latencies[count++] = System.nanoTime() - sent;
+						} else {
+							errors[number]++;
+						}
+					}
+					catch (IOException e) {
+						errors[number]++;
+					}
+				}
+				return Arrays.copyOf(latencies, count);
+			}));
+		}
+		executor.shutdown();
+		long[] all = new long[0];
+		for (Future<long[]> result : results) {
+			try {
+				long[] latencies = result.get();
+				int position = all.length;
+				all = Arrays.copyOf(all, position + latencies.length);
+				System.arraycopy(latencies, 0, all, position, latencies.length);
+			}
+			catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		Arrays.sort(all);
+		return new Report(all, Arrays.stream(errors).sum(), seconds);
+	}
+
+	/**
+	* Returns the path and query of a random request: a year, a range of years, a word of a
+	* title, or a genre, rating, and maximum length.
+	*
+	* @param random SplittableRandom used to choose the request
+	* @return String containing the path and query
+	*/
+	public static String nextRequest(SplittableRandom random) {
+		switch (random.nextInt(4)) {
+			case 0:
+				return "year?year=" + random.nextInt(MovieSelector.MIN_YEAR, MovieSelector.MAX_YEAR + 1);
+			case 1:
+				int from_year = random.nextInt(MovieSelector.MIN_YEAR, MovieSelector.MAX_YEAR + 1);
+				return "year?from=" + from_year + "&to=" + Math.min(MovieSelector.MAX_YEAR, from_year + random.nextInt(10));
+			case 2:
+				return "title?q=" + TITLE_WORDS[random.nextInt(TITLE_WORDS.length)];
+			default:
+				return "search?genre=" + GENRE_LETTERS[random.nextInt(GENRE_LETTERS.length)] + "&rating="
+					+ MovieCatalog.RATINGS[random.nextInt(MovieCatalog.RATINGS.length)] + "&length=" + random.nextInt(60, 240);
+		}
+	}
+}
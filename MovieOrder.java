@@ -0,0 +1,175 @@
+import java.util.*;		// This line is needed to use the Arrays object
+
+/**
+ * Orders in which the results of a MovieSelector search can be listed, and the code that
+ * picks one page of results in that order. A page of the first offset + limit results is
+ * found with a bounded heap that only ever holds that many rows, so listing the ten
+ * shortest matches of a million costs one pass over the matches instead of a full sort.
+ * Movies that tie keep their catalog order.
+ *
+ * @author Chris D'Englere
+ */
+public enum MovieOrder {
+	CATALOG("C", "catalog"),		//Order of the rows in the movie file
+	SHORTEST("S", "shortest first"),
+	LONGEST("L", "longest first"),
+	NEWEST("N", "newest first"),
+	OLDEST("O", "oldest first"),
+	TITLE("T", "by title");		//Titles compared as UTF-8 bytes
+
+	public final String letter;			//Letter that selects the order in the menu
+	public final String description;
+
+	/**
+	* Creates an order.
+	*
+	* @param letter String containing the letter that selects the order in the menu
+	* @param description String describing the order
+	*/
+	MovieOrder(String letter, String description) {
+		this.letter = letter;
+		this.description = description;
+	}
+
+	/**
+	* Returns the order selected by a letter or by its name, ignoring case, or null if there
+	* is no such order.
+	*
+	* @param text String containing a letter such as S or a name such as shortest
+	* @return MovieOrder selected, or null
+	*/
+	public static MovieOrder find(String text) {
+		for (MovieOrder order : values()) {
+			if (order.letter.equalsIgnoreCase(text) || order.name().equalsIgnoreCase(text)) {
+				return order;
+			}
+		}
+		return null;
+	}
+
+	/**
+	* Returns up to limit rows in this order, starting after the first offset rows.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @param rows integer array containing rows of the catalog in catalog order, or null for every row
+	* @param offset integer number of rows to skip
+	* @param limit integer largest number of rows to return, or 0 for no limit
+	* @return integer array containing the rows of the page
+	*/
+	public int[] page(MovieCatalog catalog, int[] rows, int offset, int limit) {
+		int count = rows == null ? catalog.size() : rows.length;
+		int start = Math.min(Math.max(offset, 0), count);
+		int end = limit <= 0 ? count : (int) Math.min(count, (long) start + limit);
+		if (this == CATALOG) {
+			if (rows == null) {
+				int[] page = new int[end - start];
+				for (int i = 0; i < page.length; i++) {
+					page[i] = start + i;
+				}
+				return page;
+			}
+			return Arrays.copyOfRange(rows, start, end);
+		}
+		int[] top = getTop(catalog, rows, count, end);
+		return Arrays.copyOfRange(top, start, end);
+	}
+
+	/**
+	* Returns the first k rows in this order, sorted. The rows are kept in a heap of at
+	* most k rows whose root is the row that would come last, so each other row costs one
+	* comparison unless it belongs among the first k.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @param rows integer array containing rows of the catalog, or null for every row
+	* @param count integer number of rows
+	* @param k integer number of rows to return, at most count
+	* @return integer array containing the first k rows in this order
+	*/
+	private int[] getTop(MovieCatalog catalog, int[] rows, int count, int k) {
+		int[] heap = new int[k];
+		int size = 0;
+		for (int i = 0; i < count; i++) {
+			int row = rows == null ? i : rows[i];
+			if (size < k) {
+				heap[size] = row;
+				siftUp(catalog, heap, size++);
+			} else if (k > 0 && compare(catalog, row, heap[0]) < 0) {
+				heap[0] = row;
+				siftDown(catalog, heap, 0, size);
+			}
+		}
+		for (int end = size - 1; end > 0; end--) {		//Heap sort: moves the last row to the end each time
+			int last = heap[0];
+			heap[0] = heap[end];
+			heap[end] = last;
+			siftDown(catalog, heap, 0, end);
+		}
+		return heap;
+	}
+
+	/**
+	* Compares two rows in this order, breaking ties by catalog order.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @param a integer first row
+	* @param b integer second row
+	* @return integer that is negative if a comes first, positive if b comes first
+	*/
+	private int compare(MovieCatalog catalog, int a, int b) {
+		int difference;
+		switch (this) {
+			case SHORTEST: difference = catalog.length[a] - catalog.length[b]; break;
+			case LONGEST: difference = catalog.length[b] - catalog.length[a]; break;
+			case NEWEST: difference = catalog.year[b] - catalog.year[a]; break;
+			case OLDEST: difference = catalog.year[a] - catalog.year[b]; break;
+			case TITLE: difference = catalog.title.compare(a, b); break;
+			default: difference = 0;
+		}
+		return difference != 0 ? difference : Integer.compare(a, b);
+	}
+
+	/**
+	* Moves the row at index i of the heap up until its parent comes after it.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @param heap integer array containing the heap, with the row that comes last at the root
+	* @param i integer index of the row to move
+	*/
+	private void siftUp(MovieCatalog catalog, int[] heap, int i) {
+		int row = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (compare(catalog, heap[parent], row) >= 0) {
+				break;
+			}
+			heap[i] = heap[parent];
+			i = parent;
+		}
+		heap[i] = row;
+	}
+
+	/**
+	* Moves the row at index i of the heap down until both of its children come before it.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @param heap integer array containing the heap, with the row that comes last at the root
+	* @param i integer index of the row to move
+	* @param size integer number of rows in the heap
+	*/
+	private void siftDown(MovieCatalog catalog, int[] heap, int i, int size) {
+		int row = heap[i];
+		int child = 2 * i + 1;
+		while (child < size) {
+			if (child + 1 < size && compare(catalog, heap[child + 1], heap[child]) > 0) {
+				child++;		//Picks the child that comes later
+			}
+			if (compare(catalog, heap[child], row) <= 0) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+			child = 2 * i + 1;
+		}
+		heap[i] = row;
+	}
+}
@@ -0,0 +1,461 @@
+import java.util.*;		// This line is needed to use the EnumSet and StringJoiner objects
+
+/**
+ * Search of a MovieCatalog made of any number of predicates, all of which a movie must
+ * match: a range of years, a range of lengths, a set of genres (any or all of them), a set
+ * of ratings, and text in the title. A query is built by chaining the predicate methods,
+ * such as new MovieQuery().year(1990, 1999).anyGenre(MovieSelector.COM_INDEX).title("love"),
+ * and the same query can be run against any catalog.
+ *
+ * Before a query runs it is planned against the catalog. The number of rows each predicate
+ * matches is taken from the year index, the title index, and the catalog's MovieStatistics,
+ * and the predicates are assumed to be independent. The rows are first either read from
+ * the year index, read from the title index, or found by scanning one column, whichever is
+ * expected to cost least. Each other predicate then removes rows from those, one column at
+ * a time, in the order that is expected to check the fewest rows: cheap predicates that
+ * remove many rows go first, and the title, whose check costs the most, usually goes last.
+ *
+ * @author Chris D'Englere
+ */
+public class MovieQuery {
+	public static final double TITLE_COST = 8;	//Cost of checking one title for text, relative to checking one number
+
+	/**
+	* Predicates a query can have.
+	*/
+	public enum Predicate { YEAR, LENGTH, GENRE, RATING, TITLE }
+
+	/**
+	* Ways the first rows of a query are found.
+	*/
+	public enum Access {
+		SCAN("scan"),					//Checks every row against the first predicate
+		YEAR_INDEX("year index"),		//Reads the rows of the years from MovieYearIndex
+		TITLE_INDEX("title index");		//Reads the rows whose titles contain the text from MovieTitleIndex
+
+		public final String description;
+
+		/**
+		* Creates an access method.
+		*
+		* @param description String describing it in a plan
+		*/
+		Access(String description) {
+			this.description = description;
+		}
+	}
+
+	private final EnumSet<Predicate> predicates = EnumSet.noneOf(Predicate.class);
+	private int from_year;
+	private int to_year;
+	private int min_length;
+	private int max_length;
+	private int genre_mask;
+	private boolean all_genres;
+	private int rating_mask;		//Bit c is set for each rating code c that matches
+	private String title;
+	private byte[] title_query;		//Lowercased UTF-8 bytes of title
+
+	/**
+	* Plan for running a query against one catalog.
+	*/
+	public static class Plan {
+		public final Access access;				//How the first rows are found
+		public final Predicate[] filters;		//Predicates checked after that, in order
+		public final double rows;				//Expected number of matching rows
+		public final double cost;				//Expected number of column checks
+
+		/**
+		* Creates a plan.
+		*
+		* @param access Access used to find the first rows
+		* @param filters Predicate array containing the predicates checked after that, in order
+		* @param rows double expected number of matching rows
+		* @param cost double expected number of column checks
+		*/
+		public Plan(Access access, Predicate[] filters, double rows, double cost) {
+			this.access = access;
+			this.filters = filters;
+			this.rows = rows;
+			this.cost = cost;
+		}
+
+		/**
+		* Returns the plan on one line, such as "year index, then rating, then title (about 12 rows)".
+		*
+		* @return String describing the plan
+		*/
+		@Override
+		public String toString() {
+			StringBuilder text = new StringBuilder(access.description);
+			for (Predicate filter : filters) {
+				text.append(", then ").append(filter.name().toLowerCase(Locale.ROOT));
+			}
+			return text.append(String.format(" (about %.0f rows)", rows)).toString();
+		}
+	}
+
+	/**
+	* Adds the predicate that a movie was released from from_year through to_year.
+	*
+	* @param from_year integer first year of the range
+	* @param to_year integer last year of the range
+	* @return MovieQuery this query
+	*/
+	public MovieQuery year(int from_year, int to_year) {
+		this.from_year = from_year;
+		this.to_year = to_year;
+		predicates.add(Predicate.YEAR);
+		return this;
+	}
+
+	/**
+	* Adds the predicate that a movie is from min_length through max_length minutes long.
+	*
+	* @param min_length integer shortest length
+	* @param max_length integer longest length
+	* @return MovieQuery this query
+	*/
+	public MovieQuery length(int min_length, int max_length) {
+		this.min_length = min_length;
+		this.max_length = max_length;
+		predicates.add(Predicate.LENGTH);
+		return this;
+	}
+
+	/**
+	* Adds the predicate that a movie has at least one of the genres.
+	*
+	* @param genre_indexes integer positions of the genres, such as MovieSelector.ACT_INDEX
+	* @return MovieQuery this query
+	* @throws IllegalArgumentException thrown if a genre index is not a genre
+	*/
+	public MovieQuery anyGenre(int... genre_indexes) {
+		return genres(genre_indexes, false);
+	}
+
+	/**
+	* Adds the predicate that a movie has every one of the genres.
+	*
+	* @param genre_indexes integer positions of the genres, such as MovieSelector.ACT_INDEX
+	* @return MovieQuery this query
+	* @throws IllegalArgumentException thrown if a genre index is not a genre
+	*/
+	public MovieQuery allGenres(int... genre_indexes) {
+		return genres(genre_indexes, true);
+	}
+
+	/**
+	* Adds the predicate that a movie has one of the ratings.
+	*
+	* @param rating_codes byte codes of the ratings from MovieCatalog.getRatingCode
+	* @return MovieQuery this query
+	* @throws IllegalArgumentException thrown if a code is not the code of one of MovieCatalog.RATINGS
+	*/
+	public MovieQuery rating(byte... rating_codes) {
+		int mask = 0;
+		for (byte code : rating_codes) {
+			if (code < 0 || code >= MovieCatalog.RATINGS.length) {
+				throw new IllegalArgumentException("Invalid rating");
+			}
+			mask |= 1 << code;
+		}
+		rating_mask = mask;
+		predicates.add(Predicate.RATING);
+		return this;
+	}
+
+	/**
+	* Adds the predicate that a movie's title contains text, ignoring case.
+	*
+	* @param text String that is searched for
+	* @return MovieQuery this query
+	*/
+	public MovieQuery title(String text) {
+		title = text;
+		title_query = MovieTitleIndex.getQuery(text);
+		predicates.add(Predicate.TITLE);
+		return this;
+	}
+
+	/**
+	* Returns the rows of the movies that match every predicate, in catalog order. A query
+	* without predicates matches every movie.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @return integer array containing the matching rows
+	*/
+	public int[] run(MovieCatalog catalog) {
+		Plan plan = plan(catalog);
+		Predicate[] filters = plan.filters;
+		int first = 0;		//First filter that is still to be checked
+		int[] rows;
+		if (plan.access == Access.YEAR_INDEX) {
+			rows = catalog.year_index.getRows(from_year, to_year);
+			if (from_year != to_year) {
+				Arrays.sort(rows);		//The index groups the rows by year
+			}
+		} else if (plan.access == Access.TITLE_INDEX) {
+			rows = catalog.title_index.find(title);
+		} else if (filters.length > 0 && filters[0] == Predicate.TITLE) {
+			rows = catalog.title_index.find(title);		//Scans the titles when the text is too short for the index
+			first = 1;
+		} else if (filters.length > 0) {
+			rows = new int[getEstimate(catalog, filters[0])];		//Exact for every predicate but TITLE
+			filter(catalog, filters[0], null, catalog.size(), rows);
+			first = 1;
+		} else {
+			rows = new int[catalog.size()];
+			for (int i = 0; i < rows.length; i++) {
+				rows[i] = i;
+			}
+		}
+		int count = rows.length;
+		for (int i = first; i < filters.length && count > 0; i++) {
+			count = filter(catalog, filters[i], rows, count, rows);
+		}
+		return count == rows.length ? rows : Arrays.copyOf(rows, count);
+	}
+
+	/**
+	* Returns the plan run would use for the catalog. Each way of finding the first rows is
+	* costed with the other predicates checked in their best order, and the cheapest is
+	* chosen. Checking predicates with a cost of c per row, each keeping a share s of its
+	* rows, in order of c / (1 - s) checks the fewest rows in total.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @return Plan for the query
+	*/
+	public Plan plan(MovieCatalog catalog) {
+		int size = catalog.size();
+		List<Predicate> order = new ArrayList<>(predicates);
+		order.sort(Comparator.comparingDouble(predicate -> getRank(catalog, predicate)));
+
+		double scan_rows = size;
+		double scan_cost = 0;
+		for (Predicate predicate : order) {
+			scan_cost += scan_rows * getCost(predicate);
+			scan_rows *= getSelectivity(catalog, predicate);
+		}
+		Plan best = new Plan(Access.SCAN, order.toArray(new Predicate[0]), scan_rows, scan_cost);
+		if (predicates.contains(Predicate.YEAR)) {
+			double rows = getEstimate(catalog, Predicate.YEAR);
+			double cost = rows;
+			if (from_year != to_year && rows > 1) {
+				cost += rows * Math.log(rows) / Math.log(2);		//Sorting the rows back into catalog order
+			}
+			best = cheaper(best, getPlan(catalog, Access.YEAR_INDEX, Predicate.YEAR, order, rows, cost));
+		}
+		if (predicates.contains(Predicate.TITLE) && title_query.length >= MovieTitleIndex.GRAM_LENGTH) {
+			double rows = getEstimate(catalog, Predicate.TITLE);
+			best = cheaper(best, getPlan(catalog, Access.TITLE_INDEX, Predicate.TITLE, order, rows, rows * TITLE_COST));
+		}
+		return best;
+	}
+
+	/**
+	* Returns the query as text that is the same for equal queries, such as
+	* "year=1990..1999 genre=any:101000 title=love". It is used as the query's cache key.
+	*
+	* @return String describing the query
+	*/
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		for (Predicate predicate : predicates) {
+			text.append(text.length() == 0 ? "" : " ");
+			switch (predicate) {
+				case YEAR: text.append("year=").append(from_year).append("..").append(to_year); break;
+				case LENGTH: text.append("length=").append(min_length).append("..").append(max_length); break;
+				case GENRE:
+					text.append("genre=").append(all_genres ? "all:" : "any:");
+					for (int i = 0; i < MovieCatalog.GENRES; i++) {
+						text.append((genre_mask & (1 << i)) != 0 ? '1' : '0');
+					}
+					break;
+				case RATING:
+					StringJoiner ratings = new StringJoiner(",", "rating=", "");
+					for (int code = 0; code < MovieCatalog.RATINGS.length; code++) {
+						if ((rating_mask & (1 << code)) != 0) {
+							ratings.add(MovieCatalog.RATINGS[code]);
+						}
+					}
+					text.append(ratings);
+					break;
+				default: text.append("title=").append(title.toLowerCase(Locale.ROOT));
+			}
+		}
+		return text.toString();
+	}
+
+	/**
+	* Sets the genre predicate.
+	*
+	* @param genre_indexes integer positions of the genres
+	* @param all boolean set as true if a movie must have every genre and false if any one is enough
+	* @return MovieQuery this query
+	* @throws IllegalArgumentException thrown if a genre index is not a genre
+	*/
+	private MovieQuery genres(int[] genre_indexes, boolean all) {
+		int mask = 0;
+		for (int genre_index : genre_indexes) {
+			if (genre_index < 0 || genre_index >= MovieCatalog.GENRES) {
+				throw new IllegalArgumentException("Invalid genre");
+			}
+			mask |= MovieCatalog.getGenreMask(genre_index);
+		}
+		genre_mask = mask;
+		all_genres = all;
+		predicates.add(Predicate.GENRE);
+		return this;
+	}
+
+	/**
+	* Returns the plan that finds the first rows with an index for one predicate and checks
+	* the others in the given order.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @param access Access of the index
+	* @param indexed Predicate answered by the index
+	* @param order List of every predicate in the order they are best checked
+	* @param rows double expected number of rows the index returns
+	* @param cost double expected cost of reading them
+	* @return Plan using the index
+	*/
+	private Plan getPlan(MovieCatalog catalog, Access access, Predicate indexed, List<Predicate> order, double rows, double cost) {
+		List<Predicate> filters = new ArrayList<>(order);
+		filters.remove(indexed);
+		for (Predicate predicate : filters) {
+			cost += rows * getCost(predicate);
+			rows *= getSelectivity(catalog, predicate);
+		}
+		return new Plan(access, filters.toArray(new Predicate[0]), rows, cost);
+	}
+
+	/**
+	* Returns the plan with the lower cost, or the first if they cost the same.
+	*
+	* @param first Plan to compare
+	* @param second Plan to compare
+	* @return Plan with the lower cost
+	*/
+	private static Plan cheaper(Plan first, Plan second) {
+		return second.cost < first.cost ? second : first;
+	}
+
+	/**
+	* Returns the number of rows a predicate is expected to match. Years, lengths, genres, and
+	* ratings are counted exactly. For a title, the smallest bucket of the title index is an
+	* upper bound.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @param predicate Predicate of this query
+	* @return integer number of rows
+	*/
+	private int getEstimate(MovieCatalog catalog, Predicate predicate) {
+		switch (predicate) {
+			case YEAR: return catalog.year_index.getCount(from_year, to_year);
+			case LENGTH: return catalog.statistics.getLengthCount(min_length, max_length);
+			case GENRE: return catalog.statistics.getGenreCount(genre_mask, all_genres);
+			case RATING: return catalog.statistics.getRatingCount(rating_mask);
+			default: return catalog.title_index.getEstimate(title);
+		}
+	}
+
+	/**
+	* Returns the share of rows a predicate is expected to keep.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @param predicate Predicate of this query
+	* @return double between 0 and 1
+	*/
+	private double getSelectivity(MovieCatalog catalog, Predicate predicate) {
+		return catalog.size() == 0 ? 0 : (double) getEstimate(catalog, predicate) / catalog.size();
+	}
+
+	/**
+	* Returns the cost of checking one row against a predicate.
+	*
+	* @param predicate Predicate of this query
+	* @return double cost, where checking one number costs 1
+	*/
+	private static double getCost(Predicate predicate) {
+		return predicate == Predicate.TITLE ? TITLE_COST : 1;
+	}
+
+	/**
+	* Returns the rank that orders the predicates: the cost of a check divided by the share
+	* of rows it removes. A predicate that removes nothing comes last.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @param predicate Predicate of this query
+	* @return double rank, lowest first
+	*/
+	private double getRank(MovieCatalog catalog, Predicate predicate) {
+		double removed = 1 - getSelectivity(catalog, predicate);
+		return removed <= 0 ? Double.MAX_VALUE : getCost(predicate) / removed;
+	}
+
+	/**
+	* Copies to output every row that matches a predicate, in order, and returns how many
+	* there are. The predicate is chosen once, outside the loop over the rows, so each loop
+	* reads a single column. Output may be the rows array itself.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @param predicate Predicate of this query
+	* @param rows integer array containing the rows to check, or null to check rows 0 through count - 1
+	* @param count integer number of rows to check
+	* @param output integer array the matching rows are copied to
+	* @return integer number of matching rows
+	*/
+	private int filter(MovieCatalog catalog, Predicate predicate, int[] rows, int count, int[] output) {
+		int kept = 0;
+		switch (predicate) {
+			case YEAR:
+				short[] year = catalog.year;
+				for (int i = 0; i < count; i++) {
+					int row = rows == null ? i : rows[i];
+					if (year[row] >= from_year && year[row] <= to_year) {
+						output[kept++] = row;
+					}
+				}
+				break;
+			case LENGTH:
+				short[] length = catalog.length;
+				for (int i = 0; i < count; i++) {
+					int row = rows == null ? i : rows[i];
+					if (length[row] >= min_length && length[row] <= max_length) {
+						output[kept++] = row;
+					}
+				}
+				break;
+			case GENRE:
+				byte[] genre = catalog.genre;
+				for (int i = 0; i < count; i++) {
+					int row = rows == null ? i : rows[i];
+					int genres = genre[row] & genre_mask;
+					if (all_genres ? genres == genre_mask : genres != 0) {
+						output[kept++] = row;
+					}
+				}
+				break;
+			case RATING:
+				byte[] rating = catalog.rating;
+				for (int i = 0; i < count; i++) {
+					int row = rows == null ? i : rows[i];
+					if (rating[row] >= 0 && (rating_mask & (1 << rating[row])) != 0) {
+						output[kept++] = row;
+					}
+				}
+				break;
+			default:
+				for (int i = 0; i < count; i++) {
+					int row = rows == null ? i : rows[i];
+					if (catalog.title_index.contains(row, title_query)) {
+						output[kept++] = row;
+					}
+				}
+		}
+		return kept;
+	}
+}
@@ -0,0 +1,229 @@
+import java.util.*;		// This line is needed to use the LinkedHashMap and Locale objects
+import java.util.function.*;	// This line is needed to use the Supplier object
+import java.util.concurrent.atomic.*;	// This line is needed to use the LongAdder object
+
+/**
+ * Bounded cache of MovieSelector query results, so a query that is repeated does not
+ * search the catalog again. Results are stored as arrays of rows under a key built from
+ * the normalized query by titleKey, yearKey, searchKey, or queryKey, and the least
+ * recently used result is evicted once the cache is full. The cache belongs to one
+ * catalog at a time: asking it for a result from a different catalog, such as one that
+ * has been reloaded, empties it first. The cache is safe to use from many threads at once.
+ * It can be split into segments, each holding the keys whose hash selects it under its own
+ * lock, so that threads looking up different keys rarely wait for each other. Each segment
+ * then evicts its own least recently used result.
+ *
+ * @author Chris D'Englere
+ */
+public class MovieQueryCache {
+	private final int capacity;
+	private final Segment[] segments;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	* Results of the keys that hash to one segment, in order from least to most recently
+	* used, and the catalog they were found in. Guarded by its own lock.
+	*/
+	private final class Segment extends LinkedHashMap<String, int[]> {
+		private final int capacity;
+		private MovieCatalog catalog;		//Catalog the cached results were found in
+
+		/**
+		* Creates an empty segment that holds at most capacity results.
+		*
+		* @param capacity integer maximum number of results
+		*/
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+			if (size() > capacity) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	* Creates an empty cache that holds at most capacity results in one segment, so the least
+	* recently used result of the whole cache is evicted.
+	*
+	* @param capacity integer maximum number of results
+	*/
+	public MovieQueryCache(int capacity) {
+		this(capacity, 1);
+	}
+
+	/**
+	* Creates an empty cache that holds at most capacity results, divided evenly between the
+	* given number of segments (any remainder is dropped).
+	*
+	* @param capacity integer maximum number of results, at least segments
+	* @param segments integer number of segments, a power of two
+	* @throws IllegalArgumentException thrown if segments is not a power of two or exceeds capacity
+	*/
+	public MovieQueryCache(int capacity, int segments) {
+		if (segments <= 0 || Integer.bitCount(segments) != 1 || segments > capacity) {
+			throw new IllegalArgumentException("Invalid number of cache segments: " + segments);
+		}
+		this.capacity = capacity / segments * segments;
+		this.segments = new Segment[segments];
+		for (int i = 0; i < segments; i++) {
+			this.segments[i] = new Segment(capacity / segments);
+		}
+	}
+
+	/**
+	* Returns the cached rows for key, or runs the query, caches its rows, and returns them.
+	* Only the lock of the key's segment is held, and the query runs without it, so slow
+	* queries do not hold up other threads. The returned array is shared and must not be
+	* changed.
+	*
+	* @param catalog MovieCatalog the query searches
+	* @param key String from titleKey, yearKey, searchKey, or queryKey describing the query
+	* @param query Supplier that finds the rows in the catalog
+	* @return integer array containing the matching rows
+	*/
+	public int[] get(MovieCatalog catalog, String key, Supplier<int[]> query) {
+		int hash = key.hashCode();
+		Segment segment = segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+		synchronized (segment) {
+			if (catalog != segment.catalog) {
+				segment.clear();
+				segment.catalog = catalog;
+			}
+			int[] rows = segment.get(key);
+			if (rows != null) {
+				hits.increment();
+				return rows;
+			}
+		}
+		misses.increment();
+		int[] rows = query.get();
+		synchronized (segment) {
+			if (catalog == segment.catalog) {		//Drops the result if the catalog changed while the query ran
+				segment.put(key, rows);
+			}
+		}
+		return rows;
+	}
+
+	/**
+	* Removes every cached result. The statistics are kept.
+	*/
+	public void invalidate() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+				segment.catalog = null;
+			}
+		}
+	}
+
+	/**
+	* Returns the number of results in the cache.
+	*
+	* @return integer number of cached results
+	*/
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	* Returns the number of queries answered from the cache.
+	*
+	* @return long number of hits
+	*/
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	* Returns the number of queries that had to search the catalog.
+	*
+	* @return long number of misses
+	*/
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	* Returns the number of results removed to make room for newer ones.
+	*
+	* @return long number of evictions
+	*/
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	* Returns a one line summary of the cache's size and statistics. The counts are read one
+	* at a time, so they may be slightly out of step while other threads use the cache.
+	*
+	* @return String containing the summary
+	*/
+	public String getSummary() {
+		long hit_count = getHits();
+		long miss_count = getMisses();
+		long queries = hit_count + miss_count;
+		return String.format("%d/%d results cached, %d hits, %d misses, %d evictions (%.1f%% hit rate)", size(),
+			capacity, hit_count, miss_count, getEvictions(), queries == 0 ? 0.0 : 100.0 * hit_count / queries);
+	}
+
+	/**
+	* Returns the key for a title search. Titles are matched ignoring case, so the text is
+	* lowercased.
+	*
+	* @param text String that is searched for
+	* @return String containing the key
+	*/
+	public static String titleKey(String text) {
+		return "T:" + text.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	* Returns the key for a search by a year or a range of years.
+	*
+	* @param from_year integer first year of the range
+	* @param to_year integer last year of the range
+	* @return String containing the key
+	*/
+	public static String yearKey(int from_year, int to_year) {
+		return "Y:" + from_year + ":" + to_year;
+	}
+
+	/**
+	* Returns the key for a search by genre, rating, and maximum length. The genre and
+	* rating are already normalized as an index and a code.
+	*
+	* @param genre_index integer position of the genre, such as MovieSelector.ACT_INDEX
+	* @param rating_code byte code of the rating from MovieCatalog.getRatingCode
+	* @param max_length integer maximum length in minutes
+	* @return String containing the key
+	*/
+	public static String searchKey(int genre_index, byte rating_code, int max_length) {
+		return "S:" + genre_index + ":" + rating_code + ":" + max_length;
+	}
+
+	/**
+	* Returns the key for a MovieQuery, from its text, which is the same for equal queries.
+	*
+	* @param query MovieQuery that is run
+	* @return String containing the key
+	*/
+	public static String queryKey(MovieQuery query) {
+		return "Q:" + query;
+	}
+}
@@ -1,5 +1,11 @@
 import java.util.*;		// This line is needed to use the Scanner object
-import java.io.*;		// This line is needed to use the File object
+import java.util.concurrent.*;	// This line is needed to use the ForkJoinTask object
+import java.util.function.*;	// This line is needed to use the Supplier object
+import java.io.*;		// This line is needed to use the InputStream object
+import java.nio.*;		// This line is needed to use the ByteBuffer object
+import java.nio.channels.*;	// This line is needed to use the FileChannel object
+import java.nio.file.*;	// This line is needed to use the Files object
+import java.nio.file.attribute.*;	// This line is needed to use the BasicFileAttributes object
 
 /**
  * Reads in movie data from a user provided .txt file and performs various
@@ -20,117 +26,284 @@ public class MovieSelector {
 	public static final int DRA_INDEX = 3;		//Index location that contains a 1 to indicate that the movie is of genre drama
 	public static final int DOC_INDEX = 4;		//Index location that contains a 1 to indicate that the movie is of genre documentary
 	public static final int ROM_INDEX = 5;		//Index location that contains a 1 to indicate that the movie is of genre romance
+	public static final int READ_BUFFER_SIZE = 1 << 20;	//Number of bytes (1 MB) read from the input file at one time
+	public static final int QUERY_CACHE_SIZE = 256;		//Number of query results kept in QUERY_CACHE
+	public static final MovieQueryCache QUERY_CACHE = new MovieQueryCache(QUERY_CACHE_SIZE);	//Results of recent menu queries
+
+	public static final String WATCH_OPTION = "-w";		//Command line option that turns on watch mode
+	public static final int OUTPUT_BUFFER_SIZE = 1 << 16;	//Number of characters (64 K) buffered before titles are written to the console
+
+	private static MovieOrder output_order = MovieOrder.CATALOG;	//Order titles are listed in
+	private static int output_offset = 0;		//Number of titles skipped at the start of each list
+	private static int output_limit = 0;		//Largest number of titles in each list, or 0 for no limit
 
 	/**
-	* Calls the checkCommandLineArguments, getInputScanner, and getInputFileLength
-	* methods. This begins the flow of the program.
+	* Calls the checkCommandLineArguments and openCatalog methods, then passes the
+	* catalog to the userInterface method. This begins the flow of the program.
+	* If the file cannot be read or contains an invalid row, an error is output to the
+	* console and the program is terminated. With the WATCH_OPTION, the file is opened by a
+	* MovieCatalogWatcher instead, and rows appended to the file while the program runs are
+	* added to the catalog that the menu searches.
 	*
 	* @param args command line arguments
 	*/
 	public static void main(String[] args) {
 		checkCommandLineArguments(args);
-		getInputScanner(args[0]);
-		getInputFileLength(args[0]);
+		Supplier<MovieCatalog> catalog = null;
+		try {
+			if (args.length == 2) {
+				MovieCatalogWatcher watcher = MovieCatalogWatcher.open(Paths.get(args[0]));
+				watcher.start();
+				catalog = watcher::getCatalog;
+			} else {
+				MovieCatalog opened = openCatalog(args[0]);
+				catalog = () -> opened;
+			}
+		}
+		catch (IOException e) {
+			System.out.printf("Unable to access input file: %s.\n", args[0]);
+			System.exit(1);
+		}
+		catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
+		userInterface(catalog);
 	}
-	
+
 	/**
-	* Checks the length of the String array containing the command line arguments provided
-	* by the user. If the length is anything other than 1, an error message is output
-	* to the console and the program is terminated.
+	* Returns the movie data in the input file, read from its MovieCatalogSnapshot if the
+	* snapshot was made from a file of the same size and modification time. Otherwise the
+	* file is parsed with loadCatalogParallel on every available processor and a new
+	* snapshot is saved for the next run. If the
+	* snapshot cannot be saved, for example because the directory is read only, a warning is
+	* output to the console and the parsed catalog is still returned.
 	*
-	* @param args String array containing command line arguments, if any, entered by the user
+	* @param filename String containing the name of the input file
+	* @return MovieCatalog containing the data from the file
+	* @throws IOException thrown if the file cannot be read
+	* @throws IllegalArgumentException thrown if a row does not contain valid movie data
 	*/
-	public static void checkCommandLineArguments(String[] args) {
-		if (args.length != 1) {
-			System.out.println("Usage: java MovieSelector filename");
-			System.exit(1);
-		}
+	public static MovieCatalog openCatalog(String filename) throws IOException {
+		Path source = Paths.get(filename);
+		return openCatalog(source, Files.readAttributes(source, BasicFileAttributes.class));
 	}
-	
+
 	/**
-	* Tries to open the file whose name is stored in the String filename and create a Scanner
-	* using that file. A try/catch block is used to handle the FileNotFoundException. If the
-	* file cannot be found, an error is output to the console and the program is terminated.
-	* Otherwise, the Scanner is then returned to the method that called getInputScanner.
+	* Returns the movie data in the first attributes.size() bytes of the input file, the same
+	* way as openCatalog(String). Bytes appended to the file after its attributes were read
+	* are not included.
 	*
-	* @param filename String containing the name of the input file
-	* @return Scanner for the input file
-	* @throws FileNotFoundException thrown if the specified file cannot be found
+	* @param source Path of the input file
+	* @param attributes BasicFileAttributes of the input file
+	* @return MovieCatalog containing the data from the file
+	* @throws IOException thrown if the file cannot be read
+	* @throws IllegalArgumentException thrown if a row does not contain valid movie data
+	*/
+	public static MovieCatalog openCatalog(Path source, BasicFileAttributes attributes) throws IOException {
+		return openCatalog(source, attributes, attributes.size());
+	}
+
+	/**
+	* Returns the movie data in the first size bytes of the input file, the same way as
+	* openCatalog(String). A snapshot holds the whole file, so it is only loaded or saved
+	* when size is the size given by the attributes; a shorter prefix, such as one that
+	* leaves out an unfinished last row, is always parsed. A snapshot that cannot be read or
+	* written is reported and the file is parsed instead.
+	*
+	* @param source Path of the input file
+	* @param attributes BasicFileAttributes of the input file
+	* @param size long number of bytes to read, at most attributes.size()
+	* @return MovieCatalog containing the data from the file
+	* @throws IOException thrown if the file cannot be read
+	* @throws IllegalArgumentException thrown if a row does not contain valid movie data
 	*/
-	public static Scanner getInputScanner(String filename) {
-		Scanner input = null;
+	public static MovieCatalog openCatalog(Path source, BasicFileAttributes attributes, long size) throws IOException {
+		if (size < attributes.size()) {
+			return loadCatalogParallel(source, Runtime.getRuntime().availableProcessors(), size);
+		}
+		MovieCatalog catalog = null;
 		try {
-			input = new Scanner(new File(filename));
+			catalog = MovieCatalogSnapshot.load(source, attributes);
 		}
-		catch (FileNotFoundException e) {
-			System.out.printf("Unable to access input file: %s.\n", filename);
-			System.exit(1);
+		catch (IOException | RuntimeException e) {
+			System.out.printf("Unable to load snapshot file: %s.\n", MovieCatalogSnapshot.getSnapshotPath(source));
 		}
-		return input;
+		if (catalog == null) {
+			catalog = loadCatalogParallel(source, Runtime.getRuntime().availableProcessors(), attributes.size());
+			try {
+				MovieCatalogSnapshot.save(catalog, source, attributes);
+			}
+			catch (IOException | RuntimeException e) {
+				System.out.printf("Unable to save snapshot file: %s.\n", MovieCatalogSnapshot.getSnapshotPath(source));
+			}
+		}
+		return catalog;
 	}
-	
+
 	/**
-	* Counts the number of lines (rows) in the input file. This number is used to
-	* create the arrays that will store all of the data. Calls the createArrays
-	* method, passing it the name of the file and the number of lines.
+	* Reads the whole input file once and returns its movie data as a MovieCatalog. The file
+	* is read in large blocks of bytes and each row is parsed straight from the block by
+	* MovieCatalog.Builder, so no Scanner or String is created for a row except for its
+	* fields. The first HEADER_ROWS rows and any blank rows are skipped.
 	*
 	* @param filename String containing the name of the input file
+	* @return MovieCatalog containing the data from the file
+	* @throws IOException thrown if the file cannot be read
+	* @throws IllegalArgumentException thrown if a row does not contain valid movie data
 	*/
-	public static void getInputFileLength(String filename) {
-		Scanner input = getInputScanner(filename);
-		int number_of_lines = 0;
-		while (input.hasNextLine()) {
-			input.nextLine();	//Consumes the next line
-			number_of_lines++;
+	public static MovieCatalog loadCatalog(String filename) throws IOException {
+		MovieCatalog.Builder builder = new MovieCatalog.Builder();
+		try (FileChannel input = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			parseRange(input, 0, input.size(), HEADER_ROWS, builder);
 		}
-		number_of_lines -= HEADER_ROWS;		//Subtract the number of rows that the header occupies (1) from the total number of lines
-		createArrays(filename, number_of_lines);
+		return builder.build();
 	}
-	
+
 	/**
-	* Creates an array for each of the five different movie data fields based
-	* on the length stored in number_of_lines. Reads in the data from the input
-	* file and fills this data into the appropriate element of the appropriate
-	* array. Calls the userInterface method, passing it all of the arrays that were
-	* created.
+	* Reads the input file on several threads and returns its movie data as a MovieCatalog.
+	* The file is split into chunks that end just after a newline, as MapChanger does for
+	* maps, and each chunk is parsed into its own MovieCatalog.Builder on a ForkJoinPool. The
+	* builders are then joined in file order, so the rows are in the same order as with
+	* loadCatalog. The header rows are skipped at the start of the first chunk, which is at
+	* least MapChanger.MIN_CHUNK_SIZE bytes long.
 	*
 	* @param filename String containing the name of the input file
-	* @param number_of_lines integer representing the number of rows to be used in sizing the arrays
+	* @param parallelism integer number of threads that parse the file
+	* @return MovieCatalog containing the data from the file
+	* @throws IOException thrown if the file cannot be read
+	* @throws IllegalArgumentException thrown if a row does not contain valid movie data or parallelism is less than 1
+	*/
+	public static MovieCatalog loadCatalogParallel(String filename, int parallelism) throws IOException {
+		return loadCatalogParallel(Paths.get(filename), parallelism, Long.MAX_VALUE);
+	}
+
+	/**
+	* Reads the first size bytes of the input file on several threads, the same way as
+	* loadCatalogParallel(String, int).
+	*
+	* @param file Path of the input file
+	* @param parallelism integer number of threads that parse the file
+	* @param size long number of bytes to read, or more than the size of the file to read all of it
+	* @return MovieCatalog containing the data from the file
+	* @throws IOException thrown if the file cannot be read
+	* @throws IllegalArgumentException thrown if a row does not contain valid movie data or parallelism is less than 1
+	*/
+	private static MovieCatalog loadCatalogParallel(Path file, int parallelism, long size) throws IOException {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+		}
+		try (FileChannel input = FileChannel.open(file, StandardOpenOption.READ)) {
+			long limit = Math.min(size, input.size());
+			long chunk_size = Math.max(MapChanger.MIN_CHUNK_SIZE, limit / ((long) parallelism * MapChanger.CHUNKS_PER_THREAD));
+			List<Long> boundaries = MapChanger.findChunkBoundaries(input, chunk_size);
+			boundaries.removeIf(boundary -> boundary >= limit);	//Drops the chunks of bytes appended after size was read
+			boundaries.add(limit);
+			List<MovieCatalog.Builder> builders = new ArrayList<>();
+			List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+			for (int i = 0; i < boundaries.size() - 1; i++) {
+				long start = boundaries.get(i);
+				long end = boundaries.get(i + 1);
+				int header_rows = i == 0 ? HEADER_ROWS : 0;
+				MovieCatalog.Builder builder = new MovieCatalog.Builder();
+				builders.add(builder);
+				tasks.add(ForkJoinTask.adapt(() -> {
+					parseRange(input, start, end, header_rows, builder);
+					return null;
+				}));
+			}
+			MapChanger.runTasks(parallelism, tasks);
+			return MovieCatalog.Builder.build(builders);
+		}
+	}
+
+	/**
+	* Parses the rows of the input channel from start (inclusive) to end (exclusive) into the
+	* builder. The range is read in large blocks of bytes with positional reads, so several
+	* threads can parse different ranges of the same channel at once. Each row is parsed
+	* straight from the block by MovieCatalog.Builder, so no Scanner or String is created for
+	* a row except for its fields. The first header_rows rows of the range and any blank rows
+	* are skipped.
+	*
+	* @param input FileChannel for the input file, opened for reading
+	* @param start long position of the first byte of the range, which starts a row
+	* @param end long position one past the last byte of the range, which ends a row or the file
+	* @param header_rows integer number of rows to skip at the start of the range
+	* @param builder MovieCatalog.Builder the rows are added to
+	* @throws IOException thrown if the channel cannot be read
+	* @throws IllegalArgumentException thrown if a row does not contain valid movie data
+	*/
+	static void parseRange(FileChannel input, long start, long end, int header_rows, MovieCatalog.Builder builder)
+		throws IOException {
+		byte[] buffer = new byte[(int) Math.min(READ_BUFFER_SIZE, Math.max(end - start, 1))];
+		long position = start;
+		int filled = 0;						//Number of bytes in buffer
+		int header_rows_left = header_rows;
+		boolean end_of_range = false;
+		while (!end_of_range) {
+			int count = input.read(ByteBuffer.wrap(buffer, filled, (int) Math.min(buffer.length - filled, end - position)), position);
+			if (count <= 0) {
+				end_of_range = true;
+			} else {
+				filled += count;
+				position += count;
+				end_of_range = position == end;
+			}
+			int line_start = 0;
+			int line_end = MovieCatalog.Builder.indexOf(buffer, (byte) '\n', line_start, filled);
+			while (line_end < filled || (end_of_range && line_start < filled)) {
+				if (header_rows_left > 0) {
+					header_rows_left--;
+				} else if (line_end > line_start && !(line_end == line_start + 1 && buffer[line_start] == '\r')) {
+					builder.addRow(buffer, line_start, line_end);
+				}
+				line_start = line_end + 1;
+				line_end = MovieCatalog.Builder.indexOf(buffer, (byte) '\n', line_start, filled);
+			}
+			line_start = Math.min(line_start, filled);
+			System.arraycopy(buffer, line_start, buffer, 0, filled - line_start);	//Keeps the unfinished row for the next block
+			filled -= line_start;
+			if (filled == buffer.length && !end_of_range) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);		//A single row is longer than the buffer
+			}
+		}
+	}
+	
+	/**
+	* Checks the String array containing the command line arguments provided by the user.
+	* If it holds anything other than a file name, optionally followed by the WATCH_OPTION,
+	* an error message is output to the console and the program is terminated.
+	*
+	* @param args String array containing command line arguments, if any, entered by the user
 	*/
-	public static void createArrays(String filename, int number_of_lines) {
-		String[] title = new String[number_of_lines];
-		int[] year = new int[number_of_lines];
-		int[] length = new int[number_of_lines];
-		String[] rating = new String[number_of_lines];
-		String[] genre = new String[number_of_lines];
-		Scanner input = getInputScanner(filename);
-		input.nextLine();			//Skips the header line in the input file
-		for (int i = 0; i < number_of_lines; i++) {
-			String temp = input.nextLine();
-			Scanner line_scanner = new Scanner(temp);
-			line_scanner.useDelimiter("\t");	//Changes token separator from a space to a tab
-			title[i] = line_scanner.next();
-			year[i] = line_scanner.nextInt();
-			length[i] = line_scanner.nextInt();
-			rating[i] = line_scanner.next();
-			genre[i] = line_scanner.next();
+	public static void checkCommandLineArguments(String[] args) {
+		if (args.length < 1 || args.length > 2 || (args.length == 2 && !args[1].equals(WATCH_OPTION))) {
+			System.out.println("Usage: java MovieSelector filename [" + WATCH_OPTION + "]");
+			System.exit(1);
 		}
-		userInterface(title, year, length, rating, genre);
 	}
 	
 	/**
 	* Prints a menu of options to the console. Prompts the user to select an option.
 	* Calls the appropriate method based on the option selected by the user and passes the
-	* arrays needed to execute the selected option. The user is prompted for an option
-	* continually until they decide to quit the program.
+	* catalog to it. The user is prompted for an option continually until they decide to
+	* quit the program. The results of the year, title, and genre searches are kept in
+	* QUERY_CACHE, so repeating a search does not search the catalog again.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	*/
+	public static void userInterface(MovieCatalog catalog) {
+		userInterface(() -> catalog);
+	}
+
+	/**
+	* Runs the menu of userInterface(MovieCatalog), asking catalogs for the current catalog
+	* each time an option is selected. Each option searches the one catalog it was given, so
+	* a newer catalog can be published while a search runs without any locking.
 	*
-	* @param title String array containing the title data
-	* @param year integer array containing the year data
-	* @param length integer array containing the length data
-	* @param rating String array containing the ratings data
-	* @param genre String arrray containing the genre data
+	* @param catalogs Supplier of the current MovieCatalog, such as MovieCatalogWatcher.getCatalog
 	*/
-	public static void userInterface(String[] title, int[] year, int[] length, String[] rating, String[] genre) {
+	public static void userInterface(Supplier<MovieCatalog> catalogs) {
 		Scanner console = new Scanner(System.in);
 		String userinput = "";
 		boolean exit = false;
@@ -138,20 +311,27 @@ public class MovieSelector {
 			System.out.print("\nMovie Selector - Please enter an option below.");
 			System.out.print("\n\nL - List all movies");
 			System.out.print("\nY - List movies by year");
+			System.out.print("\nR - List movies by range of years");
 			System.out.print("\nT - Search by title");
 			System.out.print("\nS - Search by genre, rating, and maximum length");
+			System.out.print("\nO - Set the order, offset, and limit of lists");
 			System.out.print("\nQ - Quit the program");
 			System.out.print("\n\nOption: ");
 			userinput = console.next();
 			userinput = userinput.toUpperCase();
+			MovieCatalog catalog = catalogs.get();
 			if (userinput.equals("L")) {
-				listMovies(title);
+				listMovies(catalog);
 			} else if (userinput.equals("Y")) {
-				listByYear(console, title, year);
+				listByYear(console, catalog);
+			} else if (userinput.equals("R")) {
+				listByYearRange(console, catalog);
 			} else if (userinput.equals("T")) {
-				searchByTitle(console, title);
+				searchByTitle(console, catalog);
 			} else if (userinput.equals("S")) {
-				search(console, title, genre, rating, length);
+				search(console, catalog);
+			} else if (userinput.equals("O")) {
+				setOutputOptions(console);
 			} else if (userinput.equals("Q")) {
 				System.out.print("\nGoodbye!\n");
 				exit = true;	//Sets the loop control variable exit to true so the loop will not run on the next attempt
@@ -164,58 +344,73 @@ public class MovieSelector {
 	/**
 	* Lists all movie titles followed by the total number of movies.
 	*
-	* @param title String array containing the title data
+	* @param catalog MovieCatalog containing the movie data
 	*/
-	public static void listMovies(String[] title) {
+	public static void listMovies(MovieCatalog catalog) {
 		System.out.println();	//Blank line for console output aesthetics
-		for (int i = 0; i < title.length; i++) {
-			System.out.println(title[i]);
-		}
-		System.out.printf("\nNumber of movies: %d\n", title.length);
+		printTitles(catalog, null);
+		System.out.printf("\nNumber of movies: %d\n", catalog.size());
 	}
 	
 	/**
 	* Prompts the user for a year and lists all movie titles for that year.
 	*
 	* @param console Scanner passed from userInterface that is used to accept input from the user
-	* @param title String array containing the title data
-	* @param year integer array containing the year data
+	* @param catalog MovieCatalog containing the movie data
 	*/
-	public static void listByYear(Scanner console, String[] title, int[] year) {
+	public static void listByYear(Scanner console, MovieCatalog catalog) {
 		System.out.printf("\nYear (%d-%d): ", MIN_YEAR, MAX_YEAR);
 		if (console.hasNextInt()) {
 			int userinput = console.nextInt();
 			if (userinput >= MIN_YEAR && userinput <= MAX_YEAR) {
 				System.out.println();	//Blank line for console output aesthetics
-				for (int i = 0; i < year.length; i++) {
-					if (year[i] == userinput) {
-						System.out.println(title[i]);
-					}
-				}
+				printTitles(catalog, QUERY_CACHE.get(catalog, MovieQueryCache.yearKey(userinput, userinput),
+					() -> findByYear(catalog, userinput)));
 			} else {
 				System.out.println("Invalid year");
 			}
 		}
 	}
 	
+	/**
+	* Prompts the user for a first and last year and lists all movie titles released in
+	* that range, oldest first.
+	*
+	* @param console Scanner passed from userInterface that is used to accept input from the user
+	* @param catalog MovieCatalog containing the movie data
+	*/
+	public static void listByYearRange(Scanner console, MovieCatalog catalog) {
+		System.out.printf("\nFrom year (%d-%d): ", MIN_YEAR, MAX_YEAR);
+		if (console.hasNextInt()) {
+			int from_year = console.nextInt();
+			System.out.printf("To year (%d-%d): ", from_year, MAX_YEAR);
+			if (console.hasNextInt()) {
+				int to_year = console.nextInt();
+				if (from_year >= MIN_YEAR && to_year <= MAX_YEAR && from_year <= to_year) {
+					System.out.println();	//Blank line for console output aesthetics
+					printTitles(catalog, QUERY_CACHE.get(catalog, MovieQueryCache.yearKey(from_year, to_year),
+						() -> findByYearRange(catalog, from_year, to_year)));
+				} else {
+					System.out.println("Invalid range of years");
+				}
+			}
+		}
+	}
+	
 	/**
 	* Prompts the user for part or all of a movie title and
 	* lists all movie titles that contain that substring ignoring case.
 	*
 	* @param console Scanner passed from userInterface that is used to accept input from the user
-	* @param title String array containing the title data
+	* @param catalog MovieCatalog containing the movie data
 	*/
-	public static void searchByTitle(Scanner console, String[] title) {
+	public static void searchByTitle(Scanner console, MovieCatalog catalog) {
 		System.out.print("\nTitle (is/contains): ");
 		console.nextLine();		//Moves input cursor past the previous line end
 		String userinput = console.nextLine();
-		userinput = userinput.toLowerCase();
 		System.out.println();	//Blank line for console output aesthetics
-		for (int i = 0; i < title.length; i++) {
-			if (title[i].toLowerCase().contains(userinput)) {
-				System.out.println(title[i]);
-			}
-		}
+		printTitles(catalog, QUERY_CACHE.get(catalog, MovieQueryCache.titleKey(userinput),
+			() -> findByTitle(catalog, userinput)));
 	}
 	
 	/**
@@ -223,45 +418,23 @@ public class MovieSelector {
 	* lists all movie titles that meet the criteria.
 	*
 	* @param console Scanner passed from userInterface that is used to accept input from the user
-	* @param title String array containing the title data
-	* @param genre String arrray containing the genre data
-	* @param rating String array containing the ratings data
-	* @param length integer array containing the length data
+	* @param catalog MovieCatalog containing the movie data
 	*/
-	public static void search(Scanner console, String[] title, String[] genre, String[] rating, int[] length) {
+	public static void search(Scanner console, MovieCatalog catalog) {
 		System.out.print("\nGenre (Action(A),Animation(N),Comedy(C),Drama(D),Documentary(O),Romance(R)): ");
 		String usergenre = console.next();
-		usergenre = usergenre.toUpperCase();
-		int genre_index = 0;
-		if (usergenre.equals("A") || usergenre.equals("N") || usergenre.equals("C") || usergenre.equals("D")
-			|| usergenre.equals("O") || usergenre.equals("R")) {
+		int genre_index = getGenreIndex(usergenre);
+		if (genre_index >= 0) {
 			System.out.print("Rating (G,PG,PG-13,R,NC-17,NR): ");
 			String userrating = console.next();
-			userrating = userrating.toUpperCase();
-			if (userrating.equals("G") || userrating.equals("PG") || userrating.equals("PG-13") || userrating.equals("R")
-				|| userrating.equals("NC-17") || userrating.equals("NR")) {
+			byte rating_code = MovieCatalog.getRatingCode(userrating.toUpperCase());
+			if (rating_code != MovieCatalog.UNKNOWN_RATING) {
 				System.out.print("Maximum length (min): ");
 				int userlength = console.nextInt();
 				if (userlength >= MIN_LENGTH) {
-					if (usergenre.equals("A")) {
-						genre_index = ACT_INDEX;
-					} else if (usergenre.equals("N")) {
-						genre_index = ANI_INDEX;
-					} else if (usergenre.equals("C")) {
-						genre_index = COM_INDEX;
-					} else if (usergenre.equals("D")) {
-						genre_index = DRA_INDEX;
-					} else if (usergenre.equals("O")) {
-						genre_index = DOC_INDEX;
-					} else if (usergenre.equals("R")) {
-						genre_index = ROM_INDEX;
-					}
 					System.out.println();	//Blank line for console output aesthetics
-					for (int i = 0; i < title.length; i++) {
-						if (genre[i].charAt(genre_index) == '1' && rating[i].equals(userrating) && length[i] <= userlength) {
-							System.out.println(title[i]);
-						}
-					}
+					printTitles(catalog, QUERY_CACHE.get(catalog, MovieQueryCache.searchKey(genre_index, rating_code, userlength),
+						() -> findMovies(catalog, genre_index, rating_code, userlength)));
 				} else {
 					System.out.println("Invalid length");
 				}
@@ -272,4 +445,205 @@ public class MovieSelector {
 			System.out.println("Invalid genre");
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	* Returns the index in the genre string of the genre the user chose with a letter:
+	* A for action, N for animation, C for comedy, D for drama, O for documentary, or R for
+	* romance, ignoring case. Returns -1 for any other input.
+	*
+	* @param usergenre String containing the letter entered by the user
+	* @return integer genre index such as ACT_INDEX, or -1 if the letter is not a genre
+	*/
+	public static int getGenreIndex(String usergenre) {
+		switch (usergenre.toUpperCase()) {
+			case "A": return ACT_INDEX;
+			case "N": return ANI_INDEX;
+			case "C": return COM_INDEX;
+			case "D": return DRA_INDEX;
+			case "O": return DOC_INDEX;
+			case "R": return ROM_INDEX;
+			default: return -1;
+		}
+	}
+
+	/**
+	* Returns the rows of the movies released in the given year, in catalog order. The rows
+	* are read from the catalog's year index instead of scanning the year column.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @param year integer year to look for
+	* @return integer array containing the matching rows
+	*/
+	public static int[] findByYear(MovieCatalog catalog, int year) {
+		return catalog.year_index.getRows(year);
+	}
+
+	/**
+	* Returns the rows of the movies released from from_year through to_year, ordered by
+	* year and then by catalog order.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @param from_year integer first year of the range
+	* @param to_year integer last year of the range
+	* @return integer array containing the matching rows
+	*/
+	public static int[] findByYearRange(MovieCatalog catalog, int from_year, int to_year) {
+		return catalog.year_index.getRows(from_year, to_year);
+	}
+
+	/**
+	* Returns the rows of the movies whose title contains text, ignoring case, in catalog
+	* order. Only the titles the catalog's title index cannot rule out are checked.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @param text String that is searched for
+	* @return integer array containing the matching rows
+	*/
+	public static int[] findByTitle(MovieCatalog catalog, String text) {
+		return catalog.title_index.find(text);
+	}
+
+	/**
+	* Returns the rows of the movies of the given genre and rating that are no longer than
+	* max_length minutes, in catalog order. Each row is checked with a bit test, a byte
+	* comparison, and a short comparison.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @param genre_index integer position of the genre, such as ACT_INDEX
+	* @param rating_code byte code of the rating from MovieCatalog.getRatingCode
+	* @param max_length integer maximum length in minutes
+	* @return integer array containing the matching rows
+	*/
+	public static int[] findMovies(MovieCatalog catalog, int genre_index, byte rating_code, int max_length) {
+		byte[] genres = catalog.genre;
+		byte[] ratings = catalog.rating;
+		short[] lengths = catalog.length;
+		byte genre_mask = MovieCatalog.getGenreMask(genre_index);
+		int[] rows = new int[16];
+		int count = 0;
+		for (int i = 0; i < genres.length; i++) {
+			if ((genres[i] & genre_mask) != 0 && ratings[i] == rating_code && lengths[i] <= max_length) {
+				rows = addRow(rows, count++, i);
+			}
+		}
+		return Arrays.copyOf(rows, count);
+	}
+
+	/**
+	* Prints the title of each row on its own line, in the order and with the offset and limit
+	* set by setOutputOptions. Only the page that is printed is ordered, using a bounded heap
+	* rather than sorting every row. The titles are collected in a buffer of OUTPUT_BUFFER_SIZE
+	* characters, so the console is written to in large blocks instead of once per title. If
+	* not every row is printed, the range that was printed is output after the titles.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @param rows integer array containing the rows to print in catalog order, or null for every row
+	*/
+	public static void printTitles(MovieCatalog catalog, int[] rows) {
+		int count = rows == null ? catalog.size() : rows.length;
+		int[] page = output_order.page(catalog, rows, output_offset, output_limit);
+		try {
+			Writer output = new BufferedWriter(new OutputStreamWriter(System.out), OUTPUT_BUFFER_SIZE);
+			writeTitles(output, catalog, page);
+			output.flush();		//Flushes System.out too, which must stay open
+		}
+		catch (IOException e) {
+			System.out.println("Unable to write to the console.");
+		}
+		if (page.length < count) {
+			System.out.printf("\nShowing %d-%d of %d (%s)\n", page.length == 0 ? 0 : Math.min(output_offset, count) + 1,
+				Math.min(output_offset, count) + page.length, count, output_order.description);
+		}
+	}
+
+	/**
+	* Writes the title of each row on its own line. A String is created only for the titles
+	* that are written. Nothing is flushed, so the titles can be collected in a large buffer
+	* and written in a few calls instead of one call per title.
+	*
+	* @param output Writer the titles are written to
+	* @param catalog MovieCatalog containing the movie data
+	* @param rows integer array containing the rows to write
+	* @throws IOException thrown if the titles cannot be written
+	*/
+	public static void writeTitles(Writer output, MovieCatalog catalog, int[] rows) throws IOException {
+		for (int row : rows) {
+			output.write(catalog.title.get(row));
+			output.write('\n');
+		}
+	}
+
+	/**
+	* Writes the UTF-8 bytes of the title of each row on its own line, straight from the
+	* catalog's arena without creating any String. Nothing is flushed.
+	*
+	* @param output OutputStream the titles are written to as UTF-8
+	* @param catalog MovieCatalog containing the movie data
+	* @param rows integer array containing the rows to write
+	* @throws IOException thrown if the titles cannot be written
+	*/
+	public static void writeTitles(OutputStream output, MovieCatalog catalog, int[] rows) throws IOException {
+		for (int row : rows) {
+			catalog.title.write(row, output);
+			output.write('\n');
+		}
+	}
+
+	/**
+	* Prompts the user for the order titles are listed in, the number of titles to skip, and
+	* the largest number of titles to list. These apply to every list until they are set again.
+	*
+	* @param console Scanner passed from userInterface that is used to accept input from the user
+	*/
+	public static void setOutputOptions(Scanner console) {
+		System.out.print("\nOrder (C - catalog, S - shortest, L - longest, N - newest, O - oldest, T - title): ");
+		MovieOrder order = MovieOrder.find(console.next());
+		if (order == null) {
+			System.out.println("Invalid order");
+			return;
+		}
+		System.out.print("Offset (0 or more): ");
+		int offset = console.hasNextInt() ? console.nextInt() : -1;
+		if (offset < 0) {
+			System.out.println("Invalid offset");
+			return;
+		}
+		System.out.print("Limit (0 for all): ");
+		int limit = console.hasNextInt() ? console.nextInt() : -1;
+		if (limit < 0) {
+			System.out.println("Invalid limit");
+			return;
+		}
+		setOutputOptions(order, offset, limit);
+	}
+
+	/**
+	* Sets the order titles are listed in, the number of titles to skip, and the largest
+	* number of titles to list.
+	*
+	* @param order MovieOrder titles are listed in
+	* @param offset integer number of titles skipped at the start of each list
+	* @param limit integer largest number of titles in each list, or 0 for no limit
+	*/
+	public static void setOutputOptions(MovieOrder order, int offset, int limit) {
+		output_order = order;
+		output_offset = offset;
+		output_limit = limit;
+	}
+
+	/**
+	* Stores row at index count of rows, first doubling the array if it is full.
+	*
+	* @param rows integer array the row is stored in
+	* @param count integer number of rows already stored
+	* @param row integer row to store
+	* @return integer array containing the rows, which is a new array if rows was full
+	*/
+	private static int[] addRow(int[] rows, int count, int row) {
+		if (count == rows.length) {
+			rows = Arrays.copyOf(rows, count * 2);
+		}
+		rows[count] = row;
+		return rows;
+	}
+}
@@ -0,0 +1,557 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.net.http.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.time.*;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+/**
+ * White box tests for loading and querying movie data in the MovieSelector and
+ * MovieCatalog classes.
+ *
+ * @author Chris D'Englere
+ */
+public class MovieSelectorTest {
+	public static final String HEADER = "Title\tYear\tLength\tRating\tGenre\n";
+	public static final String MOVIES = HEADER
+		+ "Star Wars\t1977\t121\tPG\t100000\n"
+		+ "Toy Story\t1995\t81\tG\t011000\n"
+		+ "The Godfather\t1972\t175\tR\t000100\n"
+		+ "Casablanca\t1942\t102\tPG\t000101\n"
+		+ "Finding Nemo\t2003\t100\tG\t011000\n";
+
+	@TempDir
+	Path directory;
+
+	/**
+	* Writes the movie data to a file in the temporary directory and returns its name.
+	*
+	* @param data String containing the movie data
+	* @return String containing the name of the file
+	* @throws IOException thrown if the file cannot be written
+	*/
+	private String write(String data) throws IOException {
+		Path file = directory.resolve("movies.txt");
+		Files.writeString(file, data);
+		return file.toString();
+	}
+
+	@Test
+	public void loadCatalog() throws IOException {
+		MovieCatalog catalog = MovieSelector.loadCatalog(write(MOVIES));
+		assertEquals(5, catalog.size());
+		assertEquals("Star Wars", catalog.title.get(0));
+		assertEquals(1995, catalog.year[1]);
+		assertEquals(175, catalog.length[2]);
+		assertEquals(MovieCatalog.getRatingCode("PG"), catalog.rating[3]);
+		assertEquals(0b000110, catalog.genre[4]);
+	}
+
+	@Test
+	public void loadCatalogHandlesLineEndings() throws IOException {
+		String data = MOVIES.replace("\n", "\r\n");
+		MovieCatalog catalog = MovieSelector.loadCatalog(write(data.substring(0, data.length() - 2) + "\n\n"));
+		assertEquals(5, catalog.size());
+		assertEquals(0b101000, catalog.genre[3]);
+		assertEquals(0b000110, catalog.genre[4]);
+	}
+
+	@Test
+	public void loadCatalogAcrossBlocks() throws IOException {
+		StringBuilder data = new StringBuilder(HEADER);
+		Random random = new Random(11);
+		int rows = 0;
+		while (data.length() < 3 * MovieSelector.READ_BUFFER_SIZE) {
+			data.append("Movie é ").append(rows).append('\t').append(1900 + random.nextInt(120)).append('\t')
+				.append(60 + random.nextInt(120)).append("\tPG-13\t010010\n");
+			rows++;
+		}
+		MovieCatalog catalog = MovieSelector.loadCatalog(write(data.toString()));
+		assertEquals(rows, catalog.size());
+		String[] lines = data.toString().split("\n");
+		for (int i = 0; i < rows; i++) {
+			String[] fields = lines[i + 1].split("\t");
+			assertEquals(fields[0], catalog.title.get(i));
+			assertEquals(Integer.parseInt(fields[1]), catalog.year[i]);
+			assertEquals(Integer.parseInt(fields[2]), catalog.length[i]);
+		}
+	}
+
+	@Test
+	public void loadCatalogRejectsInvalidRows() throws IOException {
+		String missing_field = write(HEADER + "Star Wars\t1977\t121\tPG\n");
+		assertThrows(IllegalArgumentException.class, () -> MovieSelector.loadCatalog(missing_field));
+		String bad_year = write(HEADER + "Star Wars\t19x7\t121\tPG\t100000\n");
+		assertThrows(IllegalArgumentException.class, () -> MovieSelector.loadCatalog(bad_year));
+		String long_length = write(HEADER + "Star Wars\t1977\t40000\tPG\t100000\n");
+		assertThrows(IllegalArgumentException.class, () -> MovieSelector.loadCatalog(long_length));
+	}
+
+	@Test
+	public void ratingsAndGenresAreEncoded() throws IOException {
+		MovieCatalog catalog = MovieSelector.loadCatalog(write(HEADER + "Short\t2001\t10\tNC-17\t1\n"
+			+ "Odd\t2001\t10\tXX\t0000011\n"));
+		assertEquals(4, catalog.rating[0]);
+		assertEquals(MovieCatalog.getGenreMask(MovieSelector.ACT_INDEX), catalog.genre[0]);
+		assertEquals(MovieCatalog.UNKNOWN_RATING, catalog.rating[1]);
+		assertEquals(MovieCatalog.getGenreMask(MovieSelector.ROM_INDEX), catalog.genre[1]);
+	}
+
+	@Test
+	public void findMovies() throws IOException {
+		MovieCatalog catalog = MovieSelector.loadCatalog(write(MOVIES));
+		assertArrayEquals(new int[] {1, 4}, MovieSelector.findMovies(catalog, MovieSelector.ANI_INDEX,
+			MovieCatalog.getRatingCode("G"), 100));
+		assertArrayEquals(new int[] {1}, MovieSelector.findMovies(catalog, MovieSelector.COM_INDEX,
+			MovieCatalog.getRatingCode("G"), 99));
+		assertArrayEquals(new int[] {3}, MovieSelector.findMovies(catalog, MovieSelector.ROM_INDEX,
+			MovieCatalog.getRatingCode("PG"), 200));
+		assertArrayEquals(new int[] {}, MovieSelector.findMovies(catalog, MovieSelector.DOC_INDEX,
+			MovieCatalog.getRatingCode("PG"), 200));
+		assertArrayEquals(new int[] {2}, MovieSelector.findByYear(catalog, 1972));
+		assertArrayEquals(new int[] {1, 2, 4}, MovieSelector.findByTitle(catalog, "O"));
+	}
+
+	@Test
+	public void yearIndex() throws IOException {
+		MovieCatalog catalog = MovieSelector.loadCatalog(write(MOVIES + "Aladdin\t1992\t90\tG\t011001\n"
+			+ "Alien\t1979\t117\tR\t100000\n"));
+		assertArrayEquals(new int[] {0}, MovieSelector.findByYear(catalog, 1977));
+		assertArrayEquals(new int[] {}, MovieSelector.findByYear(catalog, 1980));
+		assertArrayEquals(new int[] {}, MovieSelector.findByYear(catalog, MovieSelector.MAX_YEAR));
+		assertArrayEquals(new int[] {2, 0, 6, 5, 1}, MovieSelector.findByYearRange(catalog, 1970, 1999));
+		assertArrayEquals(new int[] {3, 2, 0, 6, 5, 1, 4}, MovieSelector.findByYearRange(catalog,
+			Integer.MIN_VALUE, Integer.MAX_VALUE));
+		assertArrayEquals(new int[] {}, MovieSelector.findByYearRange(catalog, 1999, 1970));
+		assertEquals(3, catalog.year_index.getCount(1972, 1979));
+
+		Random random = new Random(13);
+		short[] year = new short[1000];
+		for (int i = 0; i < year.length; i++) {
+			year[i] = (short) (MovieSelector.MIN_YEAR + random.nextInt(MovieSelector.MAX_YEAR - MovieSelector.MIN_YEAR + 1));
+		}
+		MovieYearIndex index = new MovieYearIndex(year);
+		for (int y = MovieSelector.MIN_YEAR; y <= MovieSelector.MAX_YEAR; y++) {
+			int[] rows = index.getRows(y);
+			int count = 0;
+			for (int i = 0; i < year.length; i++) {
+				if (year[i] == y) {
+					assertEquals(i, rows[count++]);
+				}
+			}
+			assertEquals(count, rows.length);
+		}
+	}
+
+	@Test
+	public void titleIndex() {
+		Random random = new Random(14);
+		String letters = "abcABC é";
+		String[] title = new String[3000];
+		for (int i = 0; i < title.length; i++) {
+			char[] text = new char[random.nextInt(12)];
+			for (int j = 0; j < text.length; j++) {
+				text[j] = letters.charAt(random.nextInt(letters.length()));
+			}
+			title[i] = new String(text);
+		}
+		MovieTitleIndex index = new MovieTitleIndex(MovieTitles.of(title));
+		MovieTitleIndex appended = new MovieTitleIndex(MovieTitles.of(Arrays.copyOf(title, 2000)))
+			.append(MovieTitles.of(Arrays.copyOfRange(title, 2000, title.length)));
+		for (int q = 0; q < 500; q++) {
+			char[] text = new char[random.nextInt(6)];
+			for (int j = 0; j < text.length; j++) {
+				text[j] = letters.charAt(random.nextInt(letters.length()));
+			}
+			String query = new String(text);
+			int[] expected = new int[title.length];
+			int count = 0;
+			for (int i = 0; i < title.length; i++) {
+				if (title[i].toLowerCase(Locale.ROOT).contains(query.toLowerCase(Locale.ROOT))) {
+					expected[count++] = i;
+				}
+			}
+			assertArrayEquals(Arrays.copyOf(expected, count), index.find(query), query);
+			assertArrayEquals(Arrays.copyOf(expected, count), appended.find(query), query);
+		}
+		assertArrayEquals(new int[] {}, new MovieTitleIndex(MovieTitles.of()).find("star"));
+	}
+
+	@Test
+	public void queryCache() throws IOException {
+		MovieCatalog catalog = MovieSelector.loadCatalog(write(MOVIES));
+		MovieQueryCache cache = new MovieQueryCache(2);
+		int[] nemo = cache.get(catalog, MovieQueryCache.titleKey("NEMO"), () -> MovieSelector.findByTitle(catalog, "NEMO"));
+		assertArrayEquals(new int[] {4}, nemo);
+		assertSame(nemo, cache.get(catalog, MovieQueryCache.titleKey("nemo"), () -> fail("Expected a cached result")));
+		cache.get(catalog, MovieQueryCache.yearKey(1970, 1979), () -> MovieSelector.findByYearRange(catalog, 1970, 1979));
+		cache.get(catalog, MovieQueryCache.titleKey("nemo"), () -> fail("Expected a cached result"));
+		cache.get(catalog, MovieQueryCache.searchKey(MovieSelector.ANI_INDEX, (byte) 0, 90), () -> new int[] {1});
+		assertEquals(2, cache.size());
+		assertEquals(2, cache.getHits());
+		assertEquals(3, cache.getMisses());
+		assertEquals(1, cache.getEvictions());		//The year range was least recently used
+
+		MovieCatalog reloaded = MovieSelector.loadCatalog(write(MOVIES));
+		assertArrayEquals(new int[] {4}, cache.get(reloaded, MovieQueryCache.titleKey("nemo"), () -> new int[] {4}));
+		assertEquals(4, cache.getMisses());
+		assertEquals(1, cache.size());
+		cache.invalidate();
+		assertEquals(0, cache.size());
+
+		MovieQueryCache segmented = new MovieQueryCache(64, 4);
+		for (int year = 1900; year < 2000; year++) {
+			int from_year = year;
+			assertArrayEquals(MovieSelector.findByYear(catalog, year), segmented.get(catalog, MovieQueryCache.yearKey(year, year),
+				() -> MovieSelector.findByYear(catalog, from_year)));
+		}
+		assertTrue(segmented.size() <= 64);
+		assertEquals(100, segmented.getMisses());
+		assertEquals(100 - segmented.size(), segmented.getEvictions());
+		int[] latest = segmented.get(catalog, MovieQueryCache.yearKey(1999, 1999), () -> fail("Expected a cached result"));
+		assertArrayEquals(new int[] {}, latest);
+		assertEquals(1, segmented.getHits());
+		segmented.invalidate();
+		assertEquals(0, segmented.size());
+		assertThrows(IllegalArgumentException.class, () -> new MovieQueryCache(64, 3));
+		assertThrows(IllegalArgumentException.class, () -> new MovieQueryCache(2, 4));
+	}
+
+	@Test
+	public void snapshot() throws IOException {
+		String filename = write(MOVIES.replace("Casablanca", "Amélie"));
+		Path snapshot = MovieCatalogSnapshot.getSnapshotPath(Paths.get(filename));
+		MovieCatalog parsed = MovieSelector.openCatalog(filename);
+		assertTrue(Files.exists(snapshot));
+		MovieCatalog loaded = MovieCatalogSnapshot.load(Paths.get(filename),
+			Files.readAttributes(Paths.get(filename), java.nio.file.attribute.BasicFileAttributes.class));
+		assertNotNull(loaded);
+		assertEquals(parsed.title, loaded.title);
+		assertArrayEquals(parsed.year, loaded.year);
+		assertArrayEquals(parsed.length, loaded.length);
+		assertArrayEquals(parsed.rating, loaded.rating);
+		assertArrayEquals(parsed.genre, loaded.genre);
+		assertArrayEquals(new int[] {3}, loaded.title_index.find("AMÉ"));
+		assertArrayEquals(new int[] {1, 2, 4}, loaded.title_index.find("o"));
+		assertEquals("Amélie", MovieSelector.openCatalog(filename).title.get(3));
+
+		Files.writeString(Paths.get(filename), "Up\t2009\t96\tPG\t010000\n", StandardOpenOption.APPEND);
+		MovieCatalog appended = MovieSelector.openCatalog(filename);
+		assertEquals(6, appended.size());
+		assertEquals("Up", appended.title.get(5));
+		assertEquals(6, MovieCatalogSnapshot.load(Paths.get(filename),
+			Files.readAttributes(Paths.get(filename), java.nio.file.attribute.BasicFileAttributes.class)).size());
+
+		BasicFileAttributes attributes = Files.readAttributes(Paths.get(filename), BasicFileAttributes.class);
+		byte[] saved = Files.readAllBytes(snapshot);
+		ByteBuffer header = ByteBuffer.wrap(saved).order(ByteOrder.LITTLE_ENDIAN);
+		int rows = header.getInt(24);
+		int buckets = header.getInt(28);
+		int rating_start = MovieCatalogSnapshot.HEADER_SIZE + 4 * rows;
+		int index_start = MovieCatalogSnapshot.HEADER_SIZE + 6 * rows + 4 * (rows + 1);
+		int postings_start = index_start + 4 * (buckets + 1);
+		byte[] bad_rating = saved.clone();
+		bad_rating[rating_start] = (byte) MovieCatalog.RATINGS.length;
+		byte[] bad_row = saved.clone();
+		ByteBuffer.wrap(bad_row).order(ByteOrder.LITTLE_ENDIAN).putInt(postings_start, rows);
+		byte[] bad_bucket = saved.clone();
+		ByteBuffer.wrap(bad_bucket).order(ByteOrder.LITTLE_ENDIAN).putInt(index_start + 4, -1);
+		byte[] bad_count = saved.clone();
+		ByteBuffer.wrap(bad_count).order(ByteOrder.LITTLE_ENDIAN).putInt(28, buckets - 1);
+		for (byte[] corrupt : List.of(bad_rating, bad_row, bad_bucket, bad_count)) {
+			Files.write(snapshot, corrupt);
+			assertNull(MovieCatalogSnapshot.load(Paths.get(filename), attributes));
+		}
+
+		Files.write(snapshot, new byte[] {1, 2, 3});
+		assertEquals(6, MovieSelector.openCatalog(filename).size());
+	}
+
+	@Test
+	public void snapshotKeepsUnknownRating() throws IOException {
+		String filename = write(HEADER + "Star Wars\t1977\t121\tPG\t100000\nThe Wire\t2002\t60\tTV-MA\t000100\n");
+		MovieCatalog parsed = MovieSelector.openCatalog(filename);
+		assertEquals(MovieCatalog.UNKNOWN_RATING, parsed.rating[1]);
+		MovieCatalog loaded = MovieCatalogSnapshot.load(Paths.get(filename), Files.readAttributes(Paths.get(filename), BasicFileAttributes.class));
+		assertNotNull(loaded);
+		assertArrayEquals(parsed.rating, loaded.rating);
+		assertArrayEquals(new int[] {1}, loaded.title_index.find("wire"));
+	}
+
+	@Test
+	public void loadCatalogParallel() throws IOException {
+		StringBuilder data = new StringBuilder(HEADER);
+		Random random = new Random(17);
+		while (data.length() < 5 * MapChanger.MIN_CHUNK_SIZE) {
+			data.append("Movie ").append(random.nextInt()).append('\t').append(1900 + random.nextInt(120)).append('\t')
+				.append(60 + random.nextInt(120)).append('\t').append(MovieCatalog.RATINGS[random.nextInt(6)])
+				.append("\t01001").append(random.nextInt(2)).append(random.nextInt(10) == 0 ? "\r\n\n" : "\n");
+		}
+		data.append("Last\t2020\t90\tNR\t000010");		//No newline at the end of the file
+		String filename = write(data.toString());
+		MovieCatalog expected = MovieSelector.loadCatalog(filename);
+		for (int parallelism : new int[] {1, 3, 8}) {
+			MovieCatalog catalog = MovieSelector.loadCatalogParallel(filename, parallelism);
+			assertEquals(expected.title, catalog.title);
+			assertArrayEquals(expected.year, catalog.year);
+			assertArrayEquals(expected.length, catalog.length);
+			assertArrayEquals(expected.rating, catalog.rating);
+			assertArrayEquals(expected.genre, catalog.genre);
+		}
+		assertEquals("Last", expected.title.get(expected.size() - 1));
+		assertEquals(0, MovieSelector.loadCatalogParallel(write(HEADER), 4).size());
+		assertEquals(0, MovieSelector.loadCatalogParallel(write(""), 4).size());
+		String bad_row = write(HEADER + "x\n");
+		IllegalArgumentException parallel = assertThrows(IllegalArgumentException.class, () -> MovieSelector.loadCatalogParallel(bad_row, 2));
+		IllegalArgumentException sequential = assertThrows(IllegalArgumentException.class, () -> MovieSelector.loadCatalog(bad_row));
+		assertEquals(sequential.getMessage(), parallel.getMessage());	//Not wrapped by the pool
+	}
+
+	@Test
+	public void watcherAppendsRows() throws IOException {
+		Path file = Paths.get(write(MOVIES));
+		MovieCatalogWatcher watcher = MovieCatalogWatcher.open(file);
+		MovieCatalog first = watcher.getCatalog();
+		assertFalse(watcher.refresh());
+
+		Files.writeString(file, "Up\t2009\t96\tPG\t010000\nAlien\t1979\t117\tR\t1000", StandardOpenOption.APPEND);
+		assertTrue(watcher.refresh());
+		MovieCatalog second = watcher.getCatalog();
+		assertEquals(5, first.size());		//Published catalogs never change
+		assertEquals(6, second.size());
+		assertArrayEquals(new int[] {5}, MovieSelector.findByTitle(second, "up"));
+		assertArrayEquals(new int[] {5}, MovieSelector.findByYear(second, 2009));
+		assertFalse(watcher.refresh());		//The unfinished row waits for its newline
+
+		Files.writeString(file, "00\n", StandardOpenOption.APPEND);
+		assertTrue(watcher.refresh());
+		MovieCatalog third = watcher.getCatalog();
+		assertEquals(7, third.size());
+		assertEquals("Alien", third.title.get(6));
+		assertEquals(MovieCatalog.getGenreMask(MovieSelector.ACT_INDEX), third.genre[6]);
+		assertEquals(Files.size(file), watcher.getPosition());
+		MovieCatalog reloaded = MovieSelector.loadCatalog(file.toString());
+		assertEquals(reloaded.title, third.title);
+		for (String query : new String[] {"a", "ar", "alien", "the", "o", "ing"}) {
+			assertArrayEquals(reloaded.title_index.find(query), third.title_index.find(query), query);
+		}
+
+		Files.writeString(file, HEADER + "Up\t2009\t96\tPG\t010000\nAli");		//Replaced while a row is being written
+		assertTrue(watcher.refresh());
+		assertEquals(1, watcher.getCatalog().size());
+		assertEquals(Files.size(file) - 3, watcher.getPosition());
+		Files.writeString(file, "en\t1979\t117\tR\t100000\n", StandardOpenOption.APPEND);
+		assertTrue(watcher.refresh());
+		assertEquals("Alien", watcher.getCatalog().title.get(1));
+
+		Files.writeString(file, MOVIES + "Alien\t19");
+		MovieCatalogWatcher partial = MovieCatalogWatcher.open(file);
+		assertEquals(5, partial.getCatalog().size());
+		assertEquals(MOVIES.length(), partial.getPosition());
+
+		Path empty = Files.createFile(directory.resolve("empty.txt"));
+		MovieCatalogWatcher started = MovieCatalogWatcher.open(empty);
+		assertEquals(0, started.getCatalog().size());
+		Files.writeString(empty, MOVIES, StandardOpenOption.APPEND);		//The header arrives after the file was opened
+		assertTrue(started.refresh());
+		assertEquals(5, started.getCatalog().size());
+		assertEquals("Star Wars", started.getCatalog().title.get(0));
+	}
+
+	@Test
+	public void watcherFollowsFile() throws IOException, InterruptedException {
+		Path file = Paths.get(write(MOVIES));
+		try (MovieCatalogWatcher watcher = MovieCatalogWatcher.open(file)) {
+			watcher.start();
+			Files.writeString(file, "Up\t2009\t96\tPG\t010000\n", StandardOpenOption.APPEND);
+			long deadline = System.nanoTime() + 30_000_000_000L;	//Some platforms poll for changes every few seconds
+			while (watcher.getCatalog().size() == 5 && System.nanoTime() < deadline) {
+				Thread.sleep(20);
+			}
+			assertEquals(6, watcher.getCatalog().size());
+		}
+	}
+
+	@Test
+	public void server() throws IOException, InterruptedException {
+		MovieCatalog catalog = MovieSelector.loadCatalog(write(MOVIES));
+		MovieServer server = new MovieServer(() -> catalog, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		server.start();
+		try {
+			URI base = URI.create("http://localhost:" + server.getPort() + "/");
+			HttpClient client = HttpClient.newHttpClient();
+			HttpResponse<String> response = client.send(HttpRequest.newBuilder(base.resolve("title?q=NEMO")).build(),
+				HttpResponse.BodyHandlers.ofString());
+			assertEquals(200, response.statusCode());
+			assertEquals("Finding Nemo\n", response.body());
+			assertEquals("1", response.headers().firstValue(MovieServer.RESULT_COUNT_HEADER).orElse(null));
+			assertEquals("The Godfather\nStar Wars\n", client.send(HttpRequest.newBuilder(base.resolve("year?from=1970&to=1979"))
+				.build(), HttpResponse.BodyHandlers.ofString()).body());
+			assertEquals("Toy Story\nFinding Nemo\n", client.send(HttpRequest.newBuilder(base.resolve("search?genre=n&rating=g&length=100"))
+				.build(), HttpResponse.BodyHandlers.ofString()).body());
+			assertEquals(5, client.send(HttpRequest.newBuilder(base.resolve("movies")).build(),
+				HttpResponse.BodyHandlers.ofString()).body().split("\n").length);
+			HttpResponse<String> invalid = client.send(HttpRequest.newBuilder(base.resolve("search?genre=X&rating=G&length=100"))
+				.build(), HttpResponse.BodyHandlers.ofString());
+			assertEquals(400, invalid.statusCode());
+			assertEquals("Invalid genre\n", invalid.body());
+			HttpResponse<String> page = client.send(HttpRequest.newBuilder(base.resolve("movies?order=newest&offset=1&limit=2"))
+				.build(), HttpResponse.BodyHandlers.ofString());
+			assertEquals("Toy Story\nStar Wars\n", page.body());
+			assertEquals("5", page.headers().firstValue(MovieServer.RESULT_COUNT_HEADER).orElse(null));
+			assertEquals(400, client.send(HttpRequest.newBuilder(base.resolve("movies?order=random")).build(),
+				HttpResponse.BodyHandlers.ofString()).statusCode());
+			assertEquals(404, client.send(HttpRequest.newBuilder(base.resolve("nothing")).build(),
+				HttpResponse.BodyHandlers.ofString()).statusCode());
+			HttpResponse<String> query = client.send(HttpRequest.newBuilder(
+				base.resolve("query?from=1990&genres=NC&match=all&ratings=G,PG&title=o")).build(), HttpResponse.BodyHandlers.ofString());
+			assertEquals("Toy Story\nFinding Nemo\n", query.body());
+			assertTrue(query.headers().firstValue(MovieServer.QUERY_PLAN_HEADER).isPresent());
+			assertEquals(400, client.send(HttpRequest.newBuilder(base.resolve("query?ratings=XX")).build(),
+				HttpResponse.BodyHandlers.ofString()).statusCode());
+
+			MovieLoadGenerator.Report report = MovieLoadGenerator.run(base, 4, Duration.ofMillis(300), 19);
+			assertTrue(report.requests > 0);
+			assertEquals(0, report.errors);
+			assertTrue(report.getPercentile(0.5) <= report.getPercentile(0.99));
+		}
+		finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	public void movieOrderPages() throws IOException {
+		MovieCatalog catalog = MovieSelector.loadCatalog(write(MOVIES));
+		assertArrayEquals(new int[] {1, 4, 3}, MovieOrder.SHORTEST.page(catalog, null, 0, 3));
+		assertArrayEquals(new int[] {4, 1}, MovieOrder.NEWEST.page(catalog, null, 0, 2));
+		assertArrayEquals(new int[] {3, 2, 0, 1, 4}, MovieOrder.OLDEST.page(catalog, null, 0, 0));
+		assertArrayEquals(new int[] {0, 3}, MovieOrder.LONGEST.page(catalog, null, 1, 2));
+		assertArrayEquals(new int[] {2, 3}, MovieOrder.CATALOG.page(catalog, null, 2, 2));
+		assertArrayEquals(new int[] {4}, MovieOrder.CATALOG.page(catalog, new int[] {0, 2, 4}, 2, 5));
+		assertArrayEquals(new int[] {}, MovieOrder.SHORTEST.page(catalog, new int[] {0, 2, 4}, 3, 5));
+		assertArrayEquals(new int[] {3, 4, 0, 2, 1}, MovieOrder.TITLE.page(catalog, null, 0, 0));
+		assertEquals(MovieOrder.NEWEST, MovieOrder.find("n"));
+		assertEquals(MovieOrder.SHORTEST, MovieOrder.find("Shortest"));
+		assertNull(MovieOrder.find("x"));
+
+		Random random = new Random(20);
+		short[] year = new short[2000];
+		short[] length = new short[year.length];
+		for (int i = 0; i < year.length; i++) {
+			year[i] = (short) (1900 + random.nextInt(20));		//Many ties, which must keep catalog order
+			length[i] = (short) (60 + random.nextInt(30));
+		}
+		String[] title = new String[year.length];
+		Arrays.fill(title, "");
+		MovieCatalog large = new MovieCatalog(MovieTitles.of(title), year, length, new byte[year.length], new byte[year.length]);
+		Integer[] sorted = new Integer[year.length];
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = i;
+		}
+		Arrays.sort(sorted, Comparator.comparingInt((Integer row) -> -large.year[row]).thenComparingInt(row -> row));
+		int[] expected = new int[sorted.length];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = sorted[i];
+		}
+		assertArrayEquals(Arrays.copyOfRange(expected, 100, 150), MovieOrder.NEWEST.page(large, null, 100, 50));
+		assertArrayEquals(expected, MovieOrder.NEWEST.page(large, null, 0, 0));
+	}
+
+	@Test
+	public void generatorIsRepeatable() throws IOException {
+		Path first = directory.resolve("first.txt");
+		Path second = directory.resolve("second.txt");
+		MovieCatalogGenerator.generate(first, 10000, 7);
+		MovieCatalogGenerator.generate(second, 10000, 7);
+		assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+		MovieCatalogGenerator.generate(second, 10000, 8);
+		assertFalse(Arrays.equals(Files.readAllBytes(first), Files.readAllBytes(second)));
+
+		MovieCatalog catalog = MovieSelector.loadCatalog(first.toString());
+		assertEquals(10000, catalog.size());
+		for (int i = 0; i < catalog.size(); i++) {
+			assertTrue(catalog.year[i] >= MovieSelector.MIN_YEAR && catalog.year[i] <= MovieCatalogGenerator.LAST_YEAR);
+			assertTrue(catalog.length[i] >= MovieSelector.MIN_LENGTH && catalog.length[i] <= MovieCatalogGenerator.MAX_LENGTH);
+			assertNotEquals(0, catalog.genre[i]);
+		}
+	}
+
+	@Test
+	public void query() throws IOException {
+		Path file = directory.resolve("generated.txt");
+		MovieCatalogGenerator.generate(file, 20000, 23);
+		MovieCatalog catalog = MovieSelector.loadCatalog(file.toString());
+		Random random = new Random(23);
+		String[] words = {"the", "star", "café", "ni", "e", "golden island"};
+		for (int q = 0; q < 300; q++) {
+			MovieQuery query = new MovieQuery();
+			int from_year = 1880 + random.nextInt(150);
+			int to_year = from_year + random.nextInt(random.nextBoolean() ? 1 : 40);
+			int min_length = 30 + random.nextInt(100);
+			int max_length = min_length + random.nextInt(100);
+			int genre_mask = random.nextInt(1 << MovieCatalog.GENRES);
+			boolean all_genres = random.nextBoolean();
+			byte rating_code = (byte) random.nextInt(MovieCatalog.RATINGS.length);
+			String text = words[random.nextInt(words.length)];
+			boolean[] used = new boolean[5];
+			for (int i = 0; i < used.length; i++) {
+				used[i] = random.nextInt(3) == 0;
+			}
+			if (used[0]) {
+				query.year(from_year, to_year);
+			}
+			if (used[1]) {
+				query.length(min_length, max_length);
+			}
+			if (used[2]) {
+				int[] genre_indexes = new int[Integer.bitCount(genre_mask)];
+				for (int i = 0, j = 0; i < MovieCatalog.GENRES; i++) {
+					if ((genre_mask & (1 << i)) != 0) {
+						genre_indexes[j++] = i;
+					}
+				}
+				if (all_genres) {
+					query.allGenres(genre_indexes);
+				} else {
+					query.anyGenre(genre_indexes);
+				}
+			}
+			if (used[3]) {
+				query.rating(rating_code, (byte) ((rating_code + 1) % MovieCatalog.RATINGS.length));
+			}
+			if (used[4]) {
+				query.title(text);
+			}
+			int[] expected = new int[catalog.size()];
+			int count = 0;
+			for (int i = 0; i < catalog.size(); i++) {
+				int genres = catalog.genre[i] & genre_mask;
+				if ((!used[0] || (catalog.year[i] >= from_year && catalog.year[i] <= to_year))
+					&& (!used[1] || (catalog.length[i] >= min_length && catalog.length[i] <= max_length))
+					&& (!used[2] || (all_genres ? genres == genre_mask : genres != 0))
+					&& (!used[3] || catalog.rating[i] == rating_code || catalog.rating[i] == (rating_code + 1) % MovieCatalog.RATINGS.length)
+					&& (!used[4] || catalog.title.get(i).toLowerCase(Locale.ROOT).contains(text))) {
+					expected[count++] = i;
+				}
+			}
+			assertArrayEquals(Arrays.copyOf(expected, count), query.run(catalog), query + ": " + query.plan(catalog));
+		}
+
+		assertEquals(MovieQuery.Access.YEAR_INDEX, new MovieQuery().rating((byte) 2).year(1990, 1990).plan(catalog).access);
+		assertEquals(MovieQuery.Access.TITLE_INDEX, new MovieQuery().year(1900, 2025).title("golden island").plan(catalog).access);
+		MovieQuery.Plan plan = new MovieQuery().title("e").length(0, 90).rating((byte) 4).plan(catalog);
+		assertEquals(MovieQuery.Access.SCAN, plan.access);
+		assertArrayEquals(new MovieQuery.Predicate[] {MovieQuery.Predicate.RATING, MovieQuery.Predicate.LENGTH,
+			MovieQuery.Predicate.TITLE}, plan.filters);
+		assertEquals(new MovieQuery().title("Star").anyGenre(1, 0).toString(), new MovieQuery().anyGenre(0, 1).title("STAR").toString());
+		assertEquals(catalog.size(), new MovieQuery().run(catalog).length);
+	}
+}
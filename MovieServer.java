@@ -0,0 +1,413 @@
+import java.util.*;		// This line is needed to use the Map object
+import java.util.concurrent.*;	// This line is needed to use the ExecutorService object
+import java.util.function.*;	// This line is needed to use the Supplier object
+import java.io.*;		// This line is needed to use the IOException object
+import java.net.*;		// This line is needed to use the InetSocketAddress object
+import java.nio.charset.*;	// This line is needed to use the StandardCharsets object
+import java.nio.file.*;	// This line is needed to use the Paths object
+import com.sun.net.httpserver.*;	// This line is needed to use the HttpServer object
+
+/**
+ * Serves the MovieSelector menu operations over HTTP, so that one loaded catalog can answer
+ * many clients at once. Requests run on MapChanger.newThreadPerTaskExecutor, which is a
+ * cached pool of platform threads on Java 17 (the build's target) and one virtual thread per
+ * request on Java 21 or later. Each searches whichever catalog is current when it starts,
+ * so catalogs published by a MovieCatalogWatcher are picked up without locking. Results
+ * are cached in the server's own MovieQueryCache, split into CACHE_SEGMENTS segments so that
+ * concurrent lookups rarely share a lock, and returned as plain text, one title per line.
+ * The operations are:
+ *
+ *   GET /movies                                 all titles
+ *   GET /year?year=1977                         titles released in a year
+ *   GET /year?from=1990&to=1999                 titles released in a range of years
+ *   GET /title?q=star                           titles containing the text, ignoring case
+ *   GET /search?genre=A&rating=PG-13&length=120 titles of a genre and rating up to a length
+ *   GET /query?from=1990&to=1999&genres=CR&ratings=PG,PG-13&title=love
+ *                                               titles matching every parameter given (see getQuery)
+ *   GET /stats                                  query cache statistics
+ *
+ * Every list also takes an optional order (catalog, shortest, longest, newest, oldest, or title,
+ * or their MovieOrder letters), offset, and limit, such as /title?q=star&order=newest&limit=10.
+ * The number of matching titles, before the offset and limit, is sent in the
+ * X-Result-Count header, and /query sends the MovieQuery plan it ran in the X-Query-Plan
+ * header. Invalid parameters are answered with status 400 and the same
+ * messages as the menu.
+ *
+ * @author Chris D'Englere
+ */
+public class MovieServer {
+	public static final int DEFAULT_PORT = 8080;		//Port used when none is given on the command line
+	public static final int BACKLOG = 1024;				//Number of connections waiting to be accepted
+	public static final int RESPONSE_BUFFER_SIZE = 1 << 16;	//Number of bytes (64 KB) buffered before a response is written
+	public static final String RESULT_COUNT_HEADER = "X-Result-Count";
+	public static final String QUERY_PLAN_HEADER = "X-Query-Plan";
+	public static final int CACHE_SIZE = 1024;			//Number of query results kept by each server
+	public static final int CACHE_SEGMENTS = 16;		//Number of separately locked parts of the cache
+
+	private final Supplier<MovieCatalog> catalogs;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final MovieQueryCache cache;
+
+	/**
+	* Creates a server for the catalogs bound to the given address. It starts answering
+	* requests once start is called.
+	*
+	* @param catalogs Supplier of the current MovieCatalog
+	* @param address InetSocketAddress the server listens on, with port 0 for any free port
+	* @throws IOException thrown if the address cannot be bound
+	*/
+	public MovieServer(Supplier<MovieCatalog> catalogs, InetSocketAddress address) throws IOException {
+		this.catalogs = catalogs;
+		this.server = HttpServer.create(address, BACKLOG);
+		this.executor = MapChanger.newThreadPerTaskExecutor();
+		this.cache = new MovieQueryCache(CACHE_SIZE, CACHE_SEGMENTS);
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+	}
+
+	/**
+	* Reads the movie file named on the command line and serves it on the loopback address.
+	* The port may follow the file name, and MovieSelector.WATCH_OPTION may come last to add
+	* rows appended to the file while the server runs.
+	*
+	* @param args command line arguments: filename [port] [-w]
+	*/
+	public static void main(String[] args) {
+		boolean watch = args.length > 1 && args[args.length - 1].equals(MovieSelector.WATCH_OPTION);
+		int count = watch ? args.length - 1 : args.length;
+		if (count < 1 || count > 2) {
+			System.out.println("Usage: java MovieServer filename [port] [" + MovieSelector.WATCH_OPTION + "]");
+			System.exit(1);
+		}
+		int port = DEFAULT_PORT;
+		if (count == 2) {
+			try {
+				port = Integer.parseInt(args[1]);
+			}
+			catch (NumberFormatException e) {
+				System.out.printf("Invalid port: %s.\n", args[1]);
+				System.exit(1);
+			}
+		}
+		Supplier<MovieCatalog> catalogs = null;
+		try {
+			if (watch) {
+				MovieCatalogWatcher watcher = MovieCatalogWatcher.open(Paths.get(args[0]));
+				watcher.start();
+				catalogs = watcher::getCatalog;
+			} else {
+				MovieCatalog catalog = MovieSelector.openCatalog(args[0]);
+				catalogs = () -> catalog;
+			}
+		}
+		catch (IOException e) {
+			System.out.printf("Unable to access input file: %s.\n", args[0]);
+			System.exit(1);
+		}
+		catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
+		try {
+			MovieServer server = new MovieServer(catalogs, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+			server.start();
+			System.out.printf("Serving %d movies on http://localhost:%d/\n", catalogs.get().size(), server.getPort());
+		}
+		catch (IOException e) {
+			System.out.printf("Unable to listen on port %d.\n", port);
+			System.exit(1);
+		}
+	}
+
+	/**
+	* Starts answering requests on a background thread.
+	*/
+	public void start() {
+		server.start();
+	}
+
+	/**
+	* Stops accepting requests, waits up to delay seconds for the ones being answered, and
+	* shuts down the request threads.
+	*
+	* @param delay integer maximum number of seconds to wait for requests to finish
+	*/
+	public void stop(int delay) {
+		server.stop(delay);
+		executor.shutdown();
+	}
+
+	/**
+	* Returns the port the server listens on.
+	*
+	* @return integer port number
+	*/
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	* Answers one request. Only GET is allowed.
+	*
+	* @param exchange HttpExchange holding the request and response
+	* @throws IOException thrown if the response cannot be written
+	*/
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (!exchange.getRequestMethod().equals("GET")) {
+				exchange.getResponseHeaders().set("Allow", "GET");
+				sendText(exchange, 405, "Only GET is allowed");
+				return;
+			}
+			MovieCatalog catalog = catalogs.get();
+			String path = exchange.getRequestURI().getPath();
+			try {
+				Map<String, String> parameters = getParameters(exchange.getRequestURI());
+				if (path.equals("/movies")) {
+					sendTitles(exchange, catalog, null, parameters);
+				} else if (path.equals("/year")) {
+					sendTitles(exchange, catalog, findByYear(catalog, parameters), parameters);
+				} else if (path.equals("/title")) {
+					String text = getParameter(parameters, "q");
+					sendTitles(exchange, catalog, cache.get(catalog, MovieQueryCache.titleKey(text),
+						() -> MovieSelector.findByTitle(catalog, text)), parameters);
+				} else if (path.equals("/search")) {
+					sendTitles(exchange, catalog, findMovies(catalog, parameters), parameters);
+				} else if (path.equals("/query")) {
+					MovieQuery query = getQuery(parameters);
+					exchange.getResponseHeaders().set(QUERY_PLAN_HEADER, query.plan(catalog).toString());
+					sendTitles(exchange, catalog, cache.get(catalog, MovieQueryCache.queryKey(query),
+						() -> query.run(catalog)), parameters);
+				} else if (path.equals("/stats")) {
+					sendText(exchange, 200, catalog.size() + " movies, " + cache.getSummary());
+				} else {
+					sendText(exchange, 404, "Unknown operation: " + path);
+				}
+			}
+			catch (IllegalArgumentException e) {
+				sendText(exchange, 400, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	* Returns the rows for a /year request, which has either a year parameter or from and
+	* to parameters.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @param parameters Map of the request's query parameters
+	* @return integer array containing the matching rows
+	* @throws IllegalArgumentException thrown if the years are missing or invalid
+	*/
+	private int[] findByYear(MovieCatalog catalog, Map<String, String> parameters) {
+		int from_year;
+		int to_year;
+		if (parameters.containsKey("year")) {
+			from_year = getIntParameter(parameters, "year");
+			to_year = from_year;
+		} else {
+			from_year = getIntParameter(parameters, "from");
+			to_year = getIntParameter(parameters, "to");
+		}
+		if (from_year < MovieSelector.MIN_YEAR || to_year > MovieSelector.MAX_YEAR || from_year > to_year) {
+			throw new IllegalArgumentException(from_year == to_year ? "Invalid year" : "Invalid range of years");
+		}
+		return cache.get(catalog, MovieQueryCache.yearKey(from_year, to_year),
+			() -> MovieSelector.findByYearRange(catalog, from_year, to_year));
+	}
+
+	/**
+	* Returns the rows for a /search request, which has genre, rating, and length parameters.
+	*
+	* @param catalog MovieCatalog containing the movie data
+	* @param parameters Map of the request's query parameters
+	* @return integer array containing the matching rows
+	* @throws IllegalArgumentException thrown if a parameter is missing or invalid
+	*/
+	private int[] findMovies(MovieCatalog catalog, Map<String, String> parameters) {
+		int genre_index = MovieSelector.getGenreIndex(getParameter(parameters, "genre"));
+		if (genre_index < 0) {
+			throw new IllegalArgumentException("Invalid genre");
+		}
+		byte rating_code = MovieCatalog.getRatingCode(getParameter(parameters, "rating").toUpperCase());
+		if (rating_code == MovieCatalog.UNKNOWN_RATING) {
+			throw new IllegalArgumentException("Invalid rating");
+		}
+		int max_length = getIntParameter(parameters, "length");
+		if (max_length < MovieSelector.MIN_LENGTH) {
+			throw new IllegalArgumentException("Invalid length");
+		}
+		return cache.get(catalog, MovieQueryCache.searchKey(genre_index, rating_code, max_length),
+			() -> MovieSelector.findMovies(catalog, genre_index, rating_code, max_length));
+	}
+
+	/**
+	* Returns the MovieQuery for a /query request. Every parameter is optional, and each one
+	* that is given adds a predicate:
+	*
+	*   year=1977 or from=1990&to=1999    released in the year or range of years (from or to alone is open ended)
+	*   min_length=60&max_length=120      from min_length through max_length minutes long (either alone is open ended)
+	*   genres=AC&match=all               with any (the default) or all of the genres, by their menu letters
+	*   ratings=PG,PG-13                  with one of the ratings
+	*   title=star                        with the text in the title, ignoring case
+	*
+	* @param parameters Map of the request's query parameters
+	* @return MovieQuery for the parameters
+	* @throws IllegalArgumentException thrown if a parameter is invalid
+	*/
+	private static MovieQuery getQuery(Map<String, String> parameters) {
+		MovieQuery query = new MovieQuery();
+		if (parameters.containsKey("year")) {
+			int year = getIntParameter(parameters, "year");
+			query.year(year, year);
+		} else if (parameters.containsKey("from") || parameters.containsKey("to")) {
+			query.year(parameters.containsKey("from") ? getIntParameter(parameters, "from") : Integer.MIN_VALUE,
+				parameters.containsKey("to") ? getIntParameter(parameters, "to") : Integer.MAX_VALUE);
+		}
+		if (parameters.containsKey("min_length") || parameters.containsKey("max_length")) {
+			query.length(parameters.containsKey("min_length") ? getIntParameter(parameters, "min_length") : Integer.MIN_VALUE,
+				parameters.containsKey("max_length") ? getIntParameter(parameters, "max_length") : Integer.MAX_VALUE);
+		}
+		if (parameters.containsKey("genres")) {
+			String letters = parameters.get("genres");
+			int[] genre_indexes = new int[letters.length()];
+			for (int i = 0; i < letters.length(); i++) {
+				genre_indexes[i] = MovieSelector.getGenreIndex(letters.substring(i, i + 1));
+				if (genre_indexes[i] < 0) {
+					throw new IllegalArgumentException("Invalid genre");
+				}
+			}
+			String match = parameters.getOrDefault("match", "any");
+			if (match.equalsIgnoreCase("all")) {
+				query.allGenres(genre_indexes);
+			} else if (match.equalsIgnoreCase("any")) {
+				query.anyGenre(genre_indexes);
+			} else {
+				throw new IllegalArgumentException("Invalid match: " + match);
+			}
+		}
+		if (parameters.containsKey("ratings")) {
+			String[] ratings = parameters.get("ratings").split(",");
+			byte[] rating_codes = new byte[ratings.length];
+			for (int i = 0; i < ratings.length; i++) {
+				rating_codes[i] = MovieCatalog.getRatingCode(ratings[i].trim().toUpperCase());
+			}
+			query.rating(rating_codes);
+		}
+		if (parameters.containsKey("title")) {
+			query.title(parameters.get("title"));
+		}
+		return query;
+	}
+
+	/**
+	* Sends the titles of one page of the rows, one per line, with status 200. The page is
+	* chosen by the order, offset, and limit parameters. The titles' UTF-8 bytes are copied
+	* from the catalog into a buffer that is sent in chunks, so a large result is never held
+	* in memory and no String is created for a title.
+	*
+	* @param exchange HttpExchange holding the request and response
+	* @param catalog MovieCatalog containing the movie data
+	* @param rows integer array containing the rows in catalog order, or null for every row
+	* @param parameters Map of the request's query parameters
+	* @throws IOException thrown if the response cannot be written
+	* @throws IllegalArgumentException thrown if the order, offset, or limit is invalid
+	*/
+	private static void sendTitles(HttpExchange exchange, MovieCatalog catalog, int[] rows, Map<String, String> parameters)
+		throws IOException {
+		MovieOrder order = MovieOrder.CATALOG;
+		if (parameters.containsKey("order")) {
+			order = MovieOrder.find(parameters.get("order"));
+			if (order == null) {
+				throw new IllegalArgumentException("Invalid order");
+			}
+		}
+		int offset = parameters.containsKey("offset") ? getIntParameter(parameters, "offset") : 0;
+		int limit = parameters.containsKey("limit") ? getIntParameter(parameters, "limit") : 0;
+		if (offset < 0) {
+			throw new IllegalArgumentException("Invalid offset");
+		}
+		if (limit < 0) {
+			throw new IllegalArgumentException("Invalid limit");
+		}
+		int[] page = order.page(catalog, rows, offset, limit);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.getResponseHeaders().set(RESULT_COUNT_HEADER, Integer.toString(rows == null ? catalog.size() : rows.length));
+		exchange.sendResponseHeaders(200, 0);
+		try (OutputStream output = new BufferedOutputStream(exchange.getResponseBody(), RESPONSE_BUFFER_SIZE)) {
+			MovieSelector.writeTitles(output, catalog, page);
+		}
+	}
+
+	/**
+	* Sends a one line message with the given status.
+	*
+	* @param exchange HttpExchange holding the request and response
+	* @param status integer HTTP status code
+	* @param message String containing the message
+	* @throws IOException thrown if the response cannot be written
+	*/
+	private static void sendText(HttpExchange exchange, int status, String message) throws IOException {
+		byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		exchange.getResponseBody().write(body);
+	}
+
+	/**
+	* Returns the query parameters of a URI, decoded. A parameter given more than once keeps
+	* its last value.
+	*
+	* @param uri URI of the request
+	* @return Map of parameter names to values
+	* @throws IllegalArgumentException thrown if a parameter is not correctly encoded
+	*/
+	static Map<String, String> getParameters(URI uri) {
+		Map<String, String> parameters = new HashMap<>();
+		String query = uri.getRawQuery();
+		if (query != null) {
+			for (String parameter : query.split("&")) {
+				int equals = parameter.indexOf('=');
+				String name = equals < 0 ? parameter : parameter.substring(0, equals);
+				String value = equals < 0 ? "" : parameter.substring(equals + 1);
+				parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+			}
+		}
+		return parameters;
+	}
+
+	/**
+	* Returns the value of a required parameter.
+	*
+	* @param parameters Map of the request's query parameters
+	* @param name String containing the name of the parameter
+	* @return String containing its value
+	* @throws IllegalArgumentException thrown if the parameter is missing
+	*/
+	private static String getParameter(Map<String, String> parameters, String name) {
+		String value = parameters.get(name);
+		if (value == null) {
+			throw new IllegalArgumentException("Missing parameter: " + name);
+		}
+		return value;
+	}
+
+	/**
+	* Returns the value of a required integer parameter.
+	*
+	* @param parameters Map of the request's query parameters
+	* @param name String containing the name of the parameter
+	* @return integer value of the parameter
+	* @throws IllegalArgumentException thrown if the parameter is missing or is not an integer
+	*/
+	private static int getIntParameter(Map<String, String> parameters, String name) {
+		String value = getParameter(parameters, name);
+		try {
+			return Integer.parseInt(value);
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid " + name + ": " + value);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * Counts of the values in the length, rating, and genre columns of a MovieCatalog, built in
+ * one pass when the catalog is created. They tell MovieQuery how many rows a predicate on
+ * one of these columns matches without scanning the column. Lengths are counted per
+ * minute and turned into running totals, so the count for any range of lengths is one
+ * subtraction. Ratings are counted per code, and genres per bitmask: with six genres there
+ * are only 64 bitmasks, so the count for any set of genres, whether a movie must have any
+ * or all of them, is exact as well. The year column already has MovieYearIndex.getCount.
+ *
+ * @author Chris D'Englere
+ */
+public class MovieStatistics {
+	private final int min_length;		//Length counted in the first slot of length_totals
+	private final int[] length_totals;	//Number of rows shorter than min_length + i minutes, for each i
+	private final int[] rating_counts;	//Number of rows with each rating code
+	private final int[] genre_counts;	//Number of rows with each genre bitmask
+
+	/**
+	* Counts the values of the columns, which all have the same length.
+	*
+	* @param length short array containing the length data
+	* @param rating byte array containing the rating codes
+	* @param genre byte array containing the genre bitmasks
+	*/
+	public MovieStatistics(short[] length, byte[] rating, byte[] genre) {
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (int i = 0; i < length.length; i++) {
+			min = Math.min(min, length[i]);
+			max = Math.max(max, length[i]);
+		}
+		if (length.length == 0) {
+			min = 0;
+			max = -1;
+		}
+		min_length = min;
+		length_totals = new int[max - min + 2];
+		rating_counts = new int[MovieCatalog.RATINGS.length];
+		genre_counts = new int[1 << MovieCatalog.GENRES];
+		for (int i = 0; i < length.length; i++) {
+			length_totals[length[i] - min + 1]++;		//Counts each length in the slot after its own
+			if (rating[i] >= 0 && rating[i] < rating_counts.length) {
+				rating_counts[rating[i]]++;
+			}
+			genre_counts[genre[i] & (genre_counts.length - 1)]++;
+		}
+		for (int i = 1; i < length_totals.length; i++) {
+			length_totals[i] += length_totals[i - 1];		//Turns the counts into running totals
+		}
+	}
+
+	/**
+	* Returns the number of movies from min_length through max_length minutes long.
+	*
+	* @param min_length integer shortest length
+	* @param max_length integer longest length
+	* @return integer number of matching rows
+	*/
+	public int getLengthCount(int min_length, int max_length) {
+		if (min_length > max_length) {
+			return 0;
+		}
+		return length_totals[clamp(max_length + 1L)] - length_totals[clamp(min_length)];
+	}
+
+	/**
+	* Returns the number of movies with one of a set of ratings.
+	*
+	* @param rating_mask integer with bit c set for each rating code c in the set
+	* @return integer number of matching rows
+	*/
+	public int getRatingCount(int rating_mask) {
+		int count = 0;
+		for (int code = 0; code < rating_counts.length; code++) {
+			if ((rating_mask & (1 << code)) != 0) {
+				count += rating_counts[code];
+			}
+		}
+		return count;
+	}
+
+	/**
+	* Returns the number of movies with any, or with all, of a set of genres.
+	*
+	* @param genre_mask integer bitmask of the genres, as from MovieCatalog.getGenreMask
+	* @param all boolean set as true if a movie must have every genre in the mask and false if any one is enough
+	* @return integer number of matching rows
+	*/
+	public int getGenreCount(int genre_mask, boolean all) {
+		int count = 0;
+		for (int mask = 0; mask < genre_counts.length; mask++) {
+			if (all ? (mask & genre_mask) == genre_mask : (mask & genre_mask) != 0) {
+				count += genre_counts[mask];
+			}
+		}
+		return count;
+	}
+
+	/**
+	* Returns the index in length_totals for a length, moved to the nearest slot when the
+	* length is outside the lengths that were counted.
+	*
+	* @param length long length in minutes
+	* @return integer index in length_totals
+	*/
+	private int clamp(long length) {
+		return (int) Math.max(0, Math.min(length - min_length, length_totals.length - 1));
+	}
+}
@@ -0,0 +1,322 @@
+import java.util.*;		// This line is needed to use the Arrays and Locale objects
+import java.nio.charset.*;	// This line is needed to use the StandardCharsets object
+
+/**
+ * Index for finding the titles of a MovieCatalog that contain some text, ignoring case.
+ * Every title is lowercased once, into its own MovieTitles arena, when the index is built.
+ * Each three byte sequence (trigram) of a lowercased title's UTF-8 is hashed to a bucket,
+ * and each bucket holds the rows whose titles contain a trigram that hashes to it, in
+ * catalog order. The buckets are filled with a counting sort into one array, the same way
+ * MovieYearIndex groups its rows. A search intersects the buckets of the text's trigrams,
+ * starting with the smallest, and checks the bytes of only the rows that are left. Text
+ * shorter than a trigram is found by scanning the lowercased titles.
+ *
+ * @author Chris D'Englere
+ */
+public class MovieTitleIndex {
+	public static final int GRAM_LENGTH = 3;			//Number of bytes in each indexed sequence
+	public static final int MIN_BUCKETS = 1 << 10;		//Fewest buckets an index has
+	public static final int MAX_BUCKETS = 1 << 22;		//Most buckets an index has
+
+	private final MovieTitles lowercase;	//Titles lowercased with Locale.ROOT
+	private final int shift;			//Number of bits a mixed trigram is shifted right to give its bucket
+	private final int[] offsets;		//Index in rows of the first row of each bucket, plus one entry for the end
+	private final int[] rows;			//Rows grouped by bucket
+
+	/**
+	* Builds the index for a title column. The titles are read twice: once to count the
+	* rows in each bucket and once to store them.
+	*
+	* @param title MovieTitles containing the title data
+	* @throws IllegalArgumentException thrown if the titles hold more trigrams than an array can index
+	*/
+	public MovieTitleIndex(MovieTitles title) {
+		lowercase = title.toLowerCase();
+		byte[] arena = lowercase.getArena();
+		int[] starts = lowercase.getOffsets();
+		int count = lowercase.size();
+		int buckets = Math.max(MIN_BUCKETS, Math.min(MAX_BUCKETS, Integer.highestOneBit(Math.max(1, count)) * 2));
+		shift = Long.SIZE - Integer.numberOfTrailingZeros(buckets);
+		offsets = new int[buckets + 1];
+		int[] last_row = new int[buckets];		//Last row added to each bucket, so a row is added to it only once
+		Arrays.fill(last_row, -1);
+		for (int i = 0; i < count; i++) {
+			for (int j = starts[i]; j + GRAM_LENGTH <= starts[i + 1]; j++) {
+				int bucket = getBucket(arena, j);
+				if (last_row[bucket] != i) {
+					last_row[bucket] = i;
+					offsets[bucket + 1]++;		//Counts each bucket in the slot after its own
+				}
+			}
+		}
+		long total = 0;
+		for (int i = 1; i < offsets.length; i++) {
+			total += offsets[i];
+			if (total > Integer.MAX_VALUE - 8) {
+				throw new IllegalArgumentException("Too many title trigrams to index: " + total);
+			}
+			offsets[i] = (int) total;			//Turns the counts into starting offsets
+		}
+		rows = new int[(int) total];
+		int[] next = Arrays.copyOf(offsets, buckets);
+		Arrays.fill(last_row, -1);
+		for (int i = 0; i < count; i++) {
+			for (int j = starts[i]; j + GRAM_LENGTH <= starts[i + 1]; j++) {
+				int bucket = getBucket(arena, j);
+				if (last_row[bucket] != i) {
+					last_row[bucket] = i;
+					rows[next[bucket]++] = i;
+				}
+			}
+		}
+	}
+
+	/**
+	* Creates the index for a title column from the lowercased titles and buckets of an
+	* index built earlier for the same titles, such as the one saved in a
+	* MovieCatalogSnapshot, so that nothing has to be lowercased or hashed again.
+	*
+	* @param lowercase MovieTitles containing the lowercased titles from getLowercase
+	* @param offsets integer array containing the start of each bucket from getOffsets
+	* @param rows integer array containing the rows of every bucket from getRows
+	* @throws IllegalArgumentException thrown if the number of buckets is not a power of two
+	*/
+	MovieTitleIndex(MovieTitles lowercase, int[] offsets, int[] rows) {
+		int buckets = offsets.length - 1;
+		if (buckets <= 0 || Integer.bitCount(buckets) != 1) {
+			throw new IllegalArgumentException("Invalid number of title index buckets: " + buckets);
+		}
+		this.lowercase = lowercase;
+		this.shift = Long.SIZE - Integer.numberOfTrailingZeros(buckets);
+		this.offsets = offsets;
+		this.rows = rows;
+	}
+
+	/**
+	* Creates an index for an existing index's titles followed by more titles, without
+	* hashing the existing titles again. The new rows come after every existing row, so each
+	* bucket is its old rows followed by its new ones. The number of buckets does not change.
+	*
+	* @param index MovieTitleIndex for the first rows
+	* @param title MovieTitles containing the titles that are added after them
+	*/
+	private MovieTitleIndex(MovieTitleIndex index, MovieTitles title) {
+		int old_rows = index.lowercase.size();
+		int buckets = index.offsets.length - 1;
+		MovieTitles added = title.toLowerCase();
+		byte[] arena = added.getArena();
+		int[] starts = added.getOffsets();
+		lowercase = index.lowercase.append(added);
+		shift = index.shift;
+		int[] added_counts = new int[buckets + 1];
+		int[] last_row = new int[buckets];		//Last row added to each bucket, so a row is added to it only once
+		Arrays.fill(last_row, -1);
+		for (int i = 0; i < added.size(); i++) {
+			for (int j = starts[i]; j + GRAM_LENGTH <= starts[i + 1]; j++) {
+				int bucket = getBucket(arena, j);
+				if (last_row[bucket] != i) {
+					last_row[bucket] = i;
+					added_counts[bucket + 1]++;
+				}
+			}
+		}
+		offsets = new int[buckets + 1];
+		long added_total = 0;
+		for (int i = 1; i <= buckets; i++) {
+			added_total += added_counts[i];
+			if (index.offsets[i] + added_total > Integer.MAX_VALUE - 8) {
+				throw new IllegalArgumentException("Too many title trigrams to index: " + (index.offsets[i] + added_total));
+			}
+			offsets[i] = index.offsets[i] + (int) added_total;
+		}
+		rows = new int[offsets[buckets]];
+		int[] next = new int[buckets];
+		int run_start = 0;		//First bucket whose old rows have not been copied yet
+		for (int bucket = 0; bucket < buckets; bucket++) {
+			if (added_counts[bucket + 1] > 0 || bucket == buckets - 1) {
+				//Buckets without new rows keep the same distance apart, so a run of them is copied at once
+				System.arraycopy(index.rows, index.offsets[run_start], rows, offsets[run_start],
+					index.offsets[bucket + 1] - index.offsets[run_start]);
+				next[bucket] = offsets[bucket] + index.offsets[bucket + 1] - index.offsets[bucket];
+				run_start = bucket + 1;
+			}
+		}
+		Arrays.fill(last_row, -1);
+		for (int i = 0; i < added.size(); i++) {
+			for (int j = starts[i]; j + GRAM_LENGTH <= starts[i + 1]; j++) {
+				int bucket = getBucket(arena, j);
+				if (last_row[bucket] != i) {
+					last_row[bucket] = i;
+					rows[next[bucket]++] = old_rows + i;
+				}
+			}
+		}
+	}
+
+	/**
+	* Returns a new index for this index's titles followed by the given titles. This index
+	* is not changed.
+	*
+	* @param title MovieTitles containing the titles of the rows added after this index's rows
+	* @return MovieTitleIndex for all of the titles
+	* @throws IllegalArgumentException thrown if the titles hold more trigrams than an array can index
+	*/
+	public MovieTitleIndex append(MovieTitles title) {
+		return new MovieTitleIndex(this, title);
+	}
+
+	/**
+	* Returns the lowercased titles the index searches. They are shared and must not be
+	* changed.
+	*
+	* @return MovieTitles containing the lowercased titles
+	*/
+	MovieTitles getLowercase() {
+		return lowercase;
+	}
+
+	/**
+	* Returns the start of each bucket in the array from getRows, plus one entry for the end.
+	* The array is shared and must not be changed.
+	*
+	* @return integer array containing the bucket offsets
+	*/
+	int[] getOffsets() {
+		return offsets;
+	}
+
+	/**
+	* Returns the rows of every bucket, one bucket after another. The array is shared and
+	* must not be changed.
+	*
+	* @return integer array containing the rows
+	*/
+	int[] getRows() {
+		return rows;
+	}
+
+	/**
+	* Returns the rows of the titles that contain text, ignoring case, in catalog order.
+	* The text is lowercased and encoded as UTF-8 once, and then matched as bytes.
+	*
+	* @param text String that is searched for
+	* @return integer array containing the matching rows
+	*/
+	public int[] find(String text) {
+		byte[] query = getQuery(text);
+		if (query.length < GRAM_LENGTH) {
+			return lowercase.find(query);		//Scans every title
+		}
+		int grams = query.length - GRAM_LENGTH + 1;
+		int[] buckets = new int[grams];
+		for (int j = 0; j < grams; j++) {
+			buckets[j] = getBucket(query, j);
+		}
+		int smallest = 0;
+		for (int j = 1; j < grams; j++) {
+			if (getBucketSize(buckets[j]) < getBucketSize(buckets[smallest])) {
+				smallest = j;
+			}
+		}
+		int[] candidates = Arrays.copyOfRange(rows, offsets[buckets[smallest]], offsets[buckets[smallest] + 1]);
+		int count = candidates.length;
+		for (int j = 0; j < grams && count > 0; j++) {
+			if (buckets[j] != buckets[smallest]) {
+				count = intersect(candidates, count, buckets[j]);
+			}
+		}
+		int matches = 0;
+		for (int i = 0; i < count; i++) {
+			if (lowercase.contains(candidates[i], query)) {
+				candidates[matches++] = candidates[i];	//Keeps only the rows whose title really contains the text
+			}
+		}
+		return Arrays.copyOf(candidates, matches);
+	}
+
+	/**
+	* Returns the most rows that can contain text: the size of the smallest bucket of its
+	* trigrams, or every row if the text is shorter than a trigram. The rows are not checked.
+	*
+	* @param text String that is searched for
+	* @return integer number of rows that may match
+	*/
+	public int getEstimate(String text) {
+		byte[] query = getQuery(text);
+		int estimate = lowercase.size();
+		for (int j = 0; j + GRAM_LENGTH <= query.length; j++) {
+			estimate = Math.min(estimate, getBucketSize(getBucket(query, j)));
+		}
+		return estimate;
+	}
+
+	/**
+	* Returns whether the title of a row contains a query from getQuery.
+	*
+	* @param row integer row of the title
+	* @param query byte array from getQuery
+	* @return boolean set as true if the title contains the text and false otherwise
+	*/
+	public boolean contains(int row, byte[] query) {
+		return lowercase.contains(row, query);
+	}
+
+	/**
+	* Returns text lowercased and encoded the way the titles are stored in the index.
+	*
+	* @param text String that is searched for
+	* @return byte array containing the lowercased UTF-8 text
+	*/
+	public static byte[] getQuery(String text) {
+		return text.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	* Removes from the first count elements of candidates every row that is not in the
+	* bucket. Both are in catalog order, so they are merged in one pass.
+	*
+	* @param candidates integer array containing rows in increasing order
+	* @param count integer number of rows in candidates
+	* @param bucket integer bucket the rows must be in
+	* @return integer number of rows left at the start of candidates
+	*/
+	private int intersect(int[] candidates, int count, int bucket) {
+		int position = offsets[bucket];
+		int end = offsets[bucket + 1];
+		int kept = 0;
+		for (int i = 0; i < count && position < end; i++) {
+			int row = candidates[i];
+			while (position < end && rows[position] < row) {
+				position++;
+			}
+			if (position < end && rows[position] == row) {
+				candidates[kept++] = row;
+			}
+		}
+		return kept;
+	}
+
+	/**
+	* Returns the number of rows in a bucket.
+	*
+	* @param bucket integer bucket
+	* @return integer number of rows
+	*/
+	private int getBucketSize(int bucket) {
+		return offsets[bucket + 1] - offsets[bucket];
+	}
+
+	/**
+	* Returns the bucket of the trigram that starts at index start of text. The three
+	* bytes are packed into a long and mixed by a multiplication so that similar trigrams
+	* land in different buckets.
+	*
+	* @param text byte array containing lowercased UTF-8 text
+	* @param start integer index of the first byte of the trigram
+	* @return integer bucket of the trigram
+	*/
+	private int getBucket(byte[] text, int start) {
+		long gram = ((text[start] & 0xFFL) << 16) | ((text[start + 1] & 0xFFL) << 8) | (text[start + 2] & 0xFFL);
+		return (int) ((gram * 0x9E3779B97F4A7C15L) >>> shift);
+	}
+}
@@ -0,0 +1,394 @@
+import java.util.*;		// This line is needed to use the Arrays and Locale objects
+import java.io.*;		// This line is needed to use the OutputStream object
+import java.nio.charset.*;	// This line is needed to use the StandardCharsets object
+
+/**
+ * Title column of a MovieCatalog. Every title is stored as UTF-8 in one byte array (the
+ * arena), one after another, and an int array holds the offset of each title in the arena
+ * plus one entry for the end. A million titles cost two arrays instead of a million String
+ * objects, each with its own header, byte array, and pointer. Titles are compared and
+ * searched as bytes, which gives the same results as comparing their characters since
+ * UTF-8 keeps the order of code points and never starts one character inside another. A
+ * String is only created by get, for titles that are printed. The arena holds at most
+ * MAX_ARENA_SIZE bytes.
+ *
+ * @author Chris D'Englere
+ */
+public class MovieTitles {
+	public static final int MAX_ARENA_SIZE = Integer.MAX_VALUE - 8;		//Most bytes of titles a column can hold
+
+	private final byte[] arena;		//UTF-8 bytes of every title, possibly followed by unused bytes
+	private final int[] offsets;	//Offset of each title in arena, plus one entry for the end
+
+	/**
+	* Creates a column from an arena and the offsets of its titles. The arrays are shared
+	* and must not be changed.
+	*
+	* @param arena byte array containing the UTF-8 bytes of the titles
+	* @param offsets integer array containing the offset of each title plus one entry for the end
+	*/
+	MovieTitles(byte[] arena, int[] offsets) {
+		this.arena = arena;
+		this.offsets = offsets;
+	}
+
+	/**
+	* Returns a column holding the given titles.
+	*
+	* @param title String array containing the title data
+	* @return MovieTitles containing the titles
+	*/
+	public static MovieTitles of(String... title) {
+		Builder builder = new Builder();
+		for (String text : title) {
+			byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+			builder.add(bytes, 0, bytes.length);
+		}
+		return builder.build();
+	}
+
+	/**
+	* Returns the number of titles.
+	*
+	* @return integer number of titles
+	*/
+	public int size() {
+		return offsets.length - 1;
+	}
+
+	/**
+	* Returns a title as a String, decoding its bytes.
+	*
+	* @param row integer row of the title
+	* @return String containing the title
+	*/
+	public String get(int row) {
+		return new String(arena, offsets[row], offsets[row + 1] - offsets[row], StandardCharsets.UTF_8);
+	}
+
+	/**
+	* Compares two titles by their bytes, which orders them by code point and so puts every
+	* upper case letter before the lower case ones.
+	*
+	* @param a integer row of the first title
+	* @param b integer row of the second title
+	* @return integer that is negative if title a comes first, positive if title b comes first, and 0 if they are equal
+	*/
+	public int compare(int a, int b) {
+		return Arrays.compareUnsigned(arena, offsets[a], offsets[a + 1], arena, offsets[b], offsets[b + 1]);
+	}
+
+	/**
+	* Returns whether a title contains the given bytes.
+	*
+	* @param row integer row of the title
+	* @param text byte array containing the UTF-8 bytes that are searched for
+	* @return boolean set as true if the title contains text and false otherwise
+	*/
+	public boolean contains(int row, byte[] text) {
+		if (text.length == 0) {
+			return true;
+		}
+		byte first = text[0];
+		int last = offsets[row + 1] - text.length;		//Last offset text can start at
+		for (int i = offsets[row]; i <= last; i++) {
+			if (arena[i] == first && Arrays.equals(arena, i + 1, i + text.length, text, 1, text.length)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	* Returns the rows of the titles that contain the given bytes, in order. The whole arena
+	* is scanned in one pass for the first byte of text, and once a title matches the scan
+	* skips to the next title.
+	*
+	* @param text byte array containing the UTF-8 bytes that are searched for
+	* @return integer array containing the matching rows
+	*/
+	public int[] find(byte[] text) {
+		if (text.length == 0) {
+			int[] rows = new int[size()];
+			for (int i = 0; i < rows.length; i++) {
+				rows[i] = i;
+			}
+			return rows;
+		}
+		int[] matches = new int[16];
+		int count = 0;
+		int row = 0;
+		byte first = text[0];
+		int last = getArenaSize() - text.length;		//Last offset text can start at
+		for (int i = 0; i <= last; i++) {
+			if (arena[i] == first && Arrays.equals(arena, i + 1, i + text.length, text, 1, text.length)) {
+				while (offsets[row + 1] <= i) {
+					row++;
+				}
+				if (i + text.length <= offsets[row + 1]) {		//The match must not run into the next title
+					if (count == matches.length) {
+						matches = Arrays.copyOf(matches, count * 2);
+					}
+					matches[count++] = row;
+					i = offsets[row + 1] - 1;
+				}
+			}
+		}
+		return Arrays.copyOf(matches, count);
+	}
+
+	/**
+	* Writes the UTF-8 bytes of a title without decoding them.
+	*
+	* @param row integer row of the title
+	* @param output OutputStream the bytes are written to
+	* @throws IOException thrown if the bytes cannot be written
+	*/
+	public void write(int row, OutputStream output) throws IOException {
+		output.write(arena, offsets[row], offsets[row + 1] - offsets[row]);
+	}
+
+	/**
+	* Returns a new column holding this column's titles followed by the given titles.
+	* Neither column is changed.
+	*
+	* @param title MovieTitles containing the titles to add
+	* @return MovieTitles containing the titles of both
+	* @throws IllegalArgumentException thrown if the titles of both do not fit in an arena
+	*/
+	public MovieTitles append(MovieTitles title) {
+		Builder builder = new Builder(size() + title.size(), getArenaSize() + title.getArenaSize());
+		builder.add(this);
+		builder.add(title);
+		return builder.build();
+	}
+
+	/**
+	* Returns a column holding every title lowercased with Locale.ROOT. Titles that are all
+	* ASCII are lowercased byte by byte. The rest are decoded, lowercased, and encoded again,
+	* because lowercasing some characters changes the number of bytes they take.
+	*
+	* @return MovieTitles containing the lowercased titles
+	* @throws IllegalArgumentException thrown if the lowercased titles do not fit in an arena
+	*/
+	public MovieTitles toLowerCase() {
+		Builder builder = new Builder(size(), getArenaSize());
+		for (int row = 0; row < size(); row++) {
+			int start = offsets[row];
+			int end = offsets[row + 1];
+			boolean ascii = true;
+			for (int i = start; i < end && ascii; i++) {
+				ascii = arena[i] >= 0;
+			}
+			if (ascii) {
+				builder.add(arena, start, end);
+				byte[] lowercase = builder.arena;
+				for (int i = builder.arena_size - (end - start); i < builder.arena_size; i++) {
+					if (lowercase[i] >= 'A' && lowercase[i] <= 'Z') {
+						lowercase[i] += 'a' - 'A';
+					}
+				}
+			} else {
+				byte[] bytes = get(row).toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+				builder.add(bytes, 0, bytes.length);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	* Returns the number of bytes of titles in the arena.
+	*
+	* @return integer number of bytes
+	*/
+	public int getArenaSize() {
+		return offsets[offsets.length - 1];
+	}
+
+	/**
+	* Returns the arena, whose first getArenaSize bytes are the titles. The array is shared
+	* and must not be changed.
+	*
+	* @return byte array containing the UTF-8 bytes of the titles
+	*/
+	byte[] getArena() {
+		return arena;
+	}
+
+	/**
+	* Returns the offset of each title in the arena, plus one entry for the end. The array
+	* is shared and must not be changed.
+	*
+	* @return integer array containing the offsets
+	*/
+	int[] getOffsets() {
+		return offsets;
+	}
+
+	/**
+	* Returns whether another column holds the same titles in the same order.
+	*
+	* @param other Object to compare with
+	* @return boolean set as true if the titles are the same and false otherwise
+	*/
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof MovieTitles)) {
+			return false;
+		}
+		MovieTitles titles = (MovieTitles) other;
+		return Arrays.equals(offsets, titles.offsets)
+			&& Arrays.equals(arena, 0, getArenaSize(), titles.arena, 0, titles.getArenaSize());
+	}
+
+	/**
+	* Returns a hash code computed from the titles.
+	*
+	* @return integer hash code
+	*/
+	@Override
+	public int hashCode() {
+		int hash = Arrays.hashCode(offsets);
+		for (int i = 0; i < getArenaSize(); i++) {
+			hash = 31 * hash + arena[i];
+		}
+		return hash;
+	}
+
+	/**
+	* Collects titles for a MovieTitles column. The arena and offsets start small and
+	* double in size whenever they fill up.
+	*/
+	public static class Builder {
+		public static final int INITIAL_CAPACITY = 1024;		//Number of titles the offsets can hold before they first grow
+		public static final int INITIAL_ARENA_SIZE = 1 << 15;	//Number of bytes the arena can hold before it first grows
+
+		private byte[] arena;
+		private int[] offsets;
+		private int size = 0;
+		private int arena_size = 0;
+
+		/**
+		* Creates an empty builder.
+		*/
+		public Builder() {
+			this(INITIAL_CAPACITY, INITIAL_ARENA_SIZE);
+		}
+
+		/**
+		* Creates an empty builder with room for the given number of titles and bytes.
+		*
+		* @param capacity integer number of titles
+		* @param arena_capacity integer number of bytes
+		*/
+		public Builder(int capacity, int arena_capacity) {
+			arena = new byte[Math.max(1, arena_capacity)];
+			offsets = new int[Math.max(1, capacity) + 1];
+		}
+
+		/**
+		* Adds the title stored as UTF-8 in data from start (inclusive) to end (exclusive).
+		*
+		* @param data byte array containing the title
+		* @param start integer index of the first byte of the title
+		* @param end integer index one past the last byte of the title
+		* @throws IllegalArgumentException thrown if the arena would hold more than MAX_ARENA_SIZE bytes
+		*/
+		public void add(byte[] data, int start, int end) {
+			int length = end - start;
+			reserve(1, length);
+			System.arraycopy(data, start, arena, arena_size, length);
+			arena_size += length;
+			offsets[++size] = arena_size;
+		}
+
+		/**
+		* Adds every title of a column.
+		*
+		* @param title MovieTitles containing the titles to add
+		* @throws IllegalArgumentException thrown if the arena would hold more than MAX_ARENA_SIZE bytes
+		*/
+		public void add(MovieTitles title) {
+			add(title.arena, title.offsets, title.size());
+		}
+
+		/**
+		* Adds every title collected by another builder.
+		*
+		* @param builder MovieTitles.Builder containing the titles to add
+		* @throws IllegalArgumentException thrown if the arena would hold more than MAX_ARENA_SIZE bytes
+		*/
+		public void add(Builder builder) {
+			add(builder.arena, builder.offsets, builder.size);
+		}
+
+		/**
+		* Returns the number of titles added so far.
+		*
+		* @return integer number of titles
+		*/
+		public int size() {
+			return size;
+		}
+
+		/**
+		* Returns the number of bytes of titles added so far.
+		*
+		* @return integer number of bytes
+		*/
+		public int getArenaSize() {
+			return arena_size;
+		}
+
+		/**
+		* Returns a column holding the titles added so far. The arrays are trimmed to the
+		* titles.
+		*
+		* @return MovieTitles containing the titles
+		*/
+		public MovieTitles build() {
+			return new MovieTitles(Arrays.copyOf(arena, arena_size), Arrays.copyOf(offsets, size + 1));
+		}
+
+		/**
+		* Adds count titles stored in an arena with the given offsets, copying the bytes at once
+		* and shifting the offsets to their place in this builder's arena.
+		*
+		* @param data byte array containing the arena
+		* @param data_offsets integer array containing the offset of each title plus one entry for the end
+		* @param count integer number of titles
+		* @throws IllegalArgumentException thrown if the arena would hold more than MAX_ARENA_SIZE bytes
+		*/
+		private void add(byte[] data, int[] data_offsets, int count) {
+			int length = data_offsets[count] - data_offsets[0];
+			reserve(count, length);
+			System.arraycopy(data, data_offsets[0], arena, arena_size, length);
+			int shift = arena_size - data_offsets[0];
+			for (int i = 1; i <= count; i++) {
+				offsets[size + i] = data_offsets[i] + shift;
+			}
+			size += count;
+			arena_size += length;
+		}
+
+		/**
+		* Makes room for more titles and bytes, doubling the arrays until they fit.
+		*
+		* @param count integer number of titles to make room for
+		* @param length integer number of bytes to make room for
+		* @throws IllegalArgumentException thrown if the arena would hold more than MAX_ARENA_SIZE bytes
+		*/
+		private void reserve(int count, int length) {
+			long needed = (long) arena_size + length;
+			if (needed > MAX_ARENA_SIZE) {
+				throw new IllegalArgumentException("Titles are too long to store: more than " + MAX_ARENA_SIZE + " bytes");
+			}
+			if (needed > arena.length) {
+				arena = Arrays.copyOf(arena, (int) Math.min(MAX_ARENA_SIZE, Math.max(needed, 2L * arena.length)));
+			}
+			if (size + count >= offsets.length) {
+				offsets = Arrays.copyOf(offsets, (int) Math.min(MAX_ARENA_SIZE, Math.max(size + count + 1L, 2L * offsets.length)));
+			}
+		}
+	}
+}
@@ -0,0 +1,121 @@
+import java.util.*;		// This line is needed to use the Arrays object
+
+/**
+ * Index from release year to the rows of a MovieCatalog, built once with a counting sort.
+ * The rows are stored grouped by year in one array, and offsets holds where each year's
+ * group starts, so the rows for a year, or for a range of years, are a single slice of
+ * that array. Within a year the rows stay in catalog order. Looking up a year costs time
+ * in proportion to the number of matching rows rather than the size of the catalog.
+ *
+ * @author Chris D'Englere
+ */
+public class MovieYearIndex {
+	private final int min_year;		//Year stored in the first group
+	private final int[] offsets;	//Index in rows of the first row of each year, plus one entry for the end
+	private final int[] rows;		//Rows grouped by year, from min_year upward
+
+	/**
+	* Builds the index for a year column. Only the years that actually occur, from the
+	* earliest to the latest, get a group.
+	*
+	* @param year short array containing the year data
+	*/
+	public MovieYearIndex(short[] year) {
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (int i = 0; i < year.length; i++) {
+			min = Math.min(min, year[i]);
+			max = Math.max(max, year[i]);
+		}
+		if (year.length == 0) {
+			min = 0;
+			max = -1;
+		}
+		min_year = min;
+		offsets = new int[max - min + 2];
+		for (int i = 0; i < year.length; i++) {
+			offsets[year[i] - min + 1]++;		//Counts each year in the slot after its own
+		}
+		for (int i = 1; i < offsets.length; i++) {
+			offsets[i] += offsets[i - 1];		//Turns the counts into starting offsets
+		}
+		rows = new int[year.length];
+		int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+		for (int i = 0; i < year.length; i++) {
+			rows[next[year[i] - min]++] = i;
+		}
+	}
+
+	/**
+	* Returns the rows of the movies released in the given year, in catalog order.
+	*
+	* @param year integer year to look for
+	* @return integer array containing the matching rows
+	*/
+	public int[] getRows(int year) {
+		return getRows(year, year);
+	}
+
+	/**
+	* Returns the rows of the movies released from from_year through to_year. The rows are
+	* ordered by year, and rows with the same year are in catalog order.
+	*
+	* @param from_year integer first year of the range
+	* @param to_year integer last year of the range
+	* @return integer array containing the matching rows
+	*/
+	public int[] getRows(int from_year, int to_year) {
+		return Arrays.copyOfRange(rows, getStart(from_year, to_year), getEnd(from_year, to_year));
+	}
+
+	/**
+	* Returns the number of movies released from from_year through to_year without
+	* collecting their rows.
+	*
+	* @param from_year integer first year of the range
+	* @param to_year integer last year of the range
+	* @return integer number of matching rows
+	*/
+	public int getCount(int from_year, int to_year) {
+		return getEnd(from_year, to_year) - getStart(from_year, to_year);
+	}
+
+	/**
+	* Returns the index in rows of the first row in the range of years.
+	*
+	* @param from_year integer first year of the range
+	* @param to_year integer last year of the range
+	* @return integer index of the first matching row
+	*/
+	private int getStart(int from_year, int to_year) {
+		if (from_year > to_year) {
+			return 0;
+		}
+		return offsets[clamp(from_year)];
+	}
+
+	/**
+	* Returns the index in rows one past the last row in the range of years.
+	*
+	* @param from_year integer first year of the range
+	* @param to_year integer last year of the range
+	* @return integer index one past the last matching row
+	*/
+	private int getEnd(int from_year, int to_year) {
+		if (from_year > to_year) {
+			return 0;
+		}
+		return offsets[clamp((long) to_year + 1)];
+	}
+
+	/**
+	* Returns the index in offsets of the group for a year, moved to the nearest group (or
+	* to the end) when the year is outside the years in the index.
+	*
+	* @param year long year
+	* @return integer index in offsets
+	*/
+	private int clamp(long year) {
+		return (int) Math.max(0, Math.min(year - min_year, offsets.length - 1));
+	}
+}
@@ -1,40 +1,74 @@
 import java.util.*;		// This line is needed to use the Scanner object
 import java.io.*;		// This line is needed to use the File object
+import java.nio.file.*;	// This line is needed to use the Path object
+import java.nio.file.attribute.*;	// This line is needed to use the PosixFileAttributeView object
+import java.nio.charset.*;	// This line is needed to use the StandardCharsets object
+import java.nio.*;		// This line is needed to use the ByteBuffer object
+import java.nio.channels.*;	// This line is needed to use the FileChannel object
 
 /**
- * Converts a PGM file that uses the P2 format into its reverse image.
+ * Converts a PGM file that uses the text P2 format or the binary P5 format into its reverse
+ * image. The image is streamed one row at a time: each row is read into a buffer that is
+ * reused for every row, mirrored in place, and written out before the next row is read, so
+ * memory use depends on the width of the image and not on its height. The reversed image is
+ * written to a temporary file that then replaces the original, so the original is never
+ * left truncated or half written if the conversion fails. A P5 file can instead be mirrored
+ * in place through a memory mapping (the -m option), which copies no pixels at all but
+ * leaves a partly mirrored file if it is interrupted.
  *
  * @author Chris D'Englere
  */ 
 public class ReversePGM {
+	public static final String TEMPORARY_EXTENSION = ".tmp";	//Ends the name of the temporary file the reversed image is written to
+	public static final int BUFFER_SIZE = 1 << 16;		//Bytes buffered when reading or writing a file
+	public static final int VALUE_WIDTH = 3;			//Smallest width of a written value, as with " %3d"
+	public static final int MAX_VALUE_DIGITS = 10;		//Most digits in a value that fits in an integer
+	public static final int MAX_BINARY_VALUE = 65535;	//Largest max grayscale value of a P5 file
+	public static final int MAX_ROW_SIZE = Integer.MAX_VALUE - 8;	//Most bytes in one row of an image
+	public static final int MAP_REGION_SIZE = 1 << 26;	//Number of bytes (64 MB) mapped from a file at one time
 
 	/**
-	* Calls the checkCommandLineArguments, getInputScanner, and createOriginalArray
-	* methods. This begins the flow of the program.
+	* Calls the checkCommandLineArguments method, and then reverseMappedFile if the -m option
+	* was given or reverseFile otherwise. This begins the flow of the program.
 	*
-	* @param args command line arguments
+	* @param args command line arguments: an optional -m followed by the filename
 	*/
 	public static void main(String[] args) {
 		checkCommandLineArguments(args);
-		getInputScanner(args[0]);
-		createOriginalArray(args[0]);
+		String filename = args[args.length - 1];
+		try {
+			if (args.length == 2) {
+				reverseMappedFile(Paths.get(filename));
+			} else {
+				reverseFile(Paths.get(filename));
+			}
+		}
+		catch (NoSuchFileException e) {
+			System.out.printf("%s (No such file or directory)\n", filename);
+			System.exit(1);
+		}
+		catch (IOException | IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
 	}
 	
 	/**
 	* Checks the length of the String array containing the command line arguments provided
-	* by the user. If the length is anything other than 1, an error message is output
-	* to the console and the program is terminated. Checks that the filename extension is
-	* .pgm. If it is not, an error message is output to the console and the program is
-	* terminated.
+	* by the user. If the arguments are anything other than a filename, optionally preceded
+	* by -m, an error message is output to the console and the program is terminated. Checks
+	* that the filename extension is .pgm. If it is not, an error message is output to the
+	* console and the program is terminated.
 	*
 	* @param args String array containing command line arguments, if any, entered by the user
 	*/
 	public static void checkCommandLineArguments(String[] args) {
-		if (args.length != 1) {
-			System.out.println("Usage: java ReversePGM filename");
+		if (args.length != 1 && (args.length != 2 || !args[0].equals("-m"))) {
+			System.out.println("Usage: java ReversePGM [-m] filename");
+			System.out.println("  -m  mirror a P5 file in place through a memory mapping");
 			System.exit(1);
 		}
-		if (!args[0].endsWith(".pgm")) {
+		if (!args[args.length - 1].endsWith(".pgm")) {
 			System.out.println("Filename must have .pgm extension");
 			System.exit(1);
 		}
@@ -82,11 +116,344 @@ public class ReversePGM {
 		return output;
 	}
 	
+	/**
+	* Replaces a P2 or P5 PGM file with its reverse image. The reversed image is streamed into a
+	* new temporary file with a unique name next to the original, which is moved over the
+	* original only once every row has been written. The temporary file is given the original's
+	* POSIX permissions where the file system has them, and a symbolic link is followed so that
+	* the file it points to is replaced and the link is kept. If anything fails, the temporary
+	* file is deleted and the original is left unchanged.
+	*
+	* @param file Path of the PGM file
+	* @throws IOException thrown if the file cannot be read or the reversed image cannot be written
+	* @throws IllegalArgumentException thrown if the file is not a valid P2 or P5 PGM file
+	*/
+	public static void reverseFile(Path file) throws IOException {
+		Path target = file.toRealPath();		//The file itself, not a link to it
+		Path temporary = Files.createTempFile(target.getParent(), target.getFileName() + ".", TEMPORARY_EXTENSION);
+		try {
+			if (Files.getFileStore(target).supportsFileAttributeView(PosixFileAttributeView.class)) {
+				Files.setPosixFilePermissions(temporary, Files.getPosixFilePermissions(target));
+			}
+			try (InputStream input = new BufferedInputStream(Files.newInputStream(target), BUFFER_SIZE);
+				OutputStream output = new BufferedOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE)) {
+				reverseStream(input, output);
+			}
+			Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temporary);
+			throw e;
+		}
+	}
+
+	/**
+	* Mirrors every row of a P5 PGM file in place. The pixels are memory mapped a region of
+	* whole rows at a time and each row is mirrored within the mapping by swapping its samples,
+	* one byte each if the max grayscale value is below 256 and two bytes each otherwise, so
+	* no pixel is copied into an array. The file is changed as it is mirrored, so a failure
+	* part way through leaves some rows mirrored; reverseFile should be used when that matters.
+	*
+	* @param file Path of the P5 PGM file
+	* @throws IOException thrown if the file cannot be opened or mapped, or holds fewer pixels than its header gives
+	* @throws IllegalArgumentException thrown if the file is not a valid P5 PGM file
+	*/
+	public static void reverseMappedFile(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			InputStream header = Channels.newInputStream(channel);	//Unbuffered, so the channel stops right after the header
+			String format_type = readToken(header);
+			if (!format_type.equals("P5")) {
+				throw new IllegalArgumentException("Only a P5 PGM file can be mirrored in place: " + format_type);
+			}
+			int columns = readValue(header);
+			int rows = readValue(header);
+			int sample_size = getSampleSize(readValue(header));
+			int row_size = getRowSize(columns, sample_size);
+			long start = channel.position();
+			if (channel.size() - start < (long) rows * row_size) {
+				throw new EOFException("PGM file ends early");
+			}
+			int region_rows = Math.max(1, MAP_REGION_SIZE / Math.max(1, row_size));
+			for (int i = 0; i < rows; i += region_rows) {
+				int count = Math.min(region_rows, rows - i);
+				ByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, start + (long) i * row_size, (long) count * row_size);
+				for (int j = 0; j < count; j++) {
+					mirrorRow(region, j * row_size, row_size, sample_size);
+				}
+			}
+		}
+	}
+
+	/**
+	* Reads a P2 or P5 PGM image from input and writes its reverse image to output, one row
+	* at a time, in the same format. The header is written the same way outputOperations
+	* writes it. P2 values are written at least three characters wide, as with "%3d", and P5
+	* samples are written as the same one or two bytes that were read. Comments in the header
+	* are skipped. Only one row of the image is held in memory at a time.
+	*
+	* @param input InputStream containing the PGM image
+	* @param output OutputStream the reversed image is written to
+	* @throws IOException thrown if input cannot be read, ends early, or output cannot be written
+	* @throws IllegalArgumentException thrown if input is not a valid P2 or P5 PGM image
+	*/
+	public static void reverseStream(InputStream input, OutputStream output) throws IOException {
+		String format_type = readToken(input);
+		if (!format_type.equals("P2") && !format_type.equals("P5")) {
+			throw new IllegalArgumentException("Not a P2 or P5 PGM file: " + format_type);
+		}
+		int columns = readValue(input);
+		int rows = readValue(input);
+		int max_grayscale_value = readValue(input);
+		output.write(String.format("%s\n%d %d\n%d\n", format_type, columns, rows, max_grayscale_value).getBytes(StandardCharsets.US_ASCII));
+		if (format_type.equals("P2")) {
+			reverseText(input, output, columns, rows);
+		} else {
+			reverseBinary(input, output, columns, rows, getSampleSize(max_grayscale_value));
+		}
+	}
+
+	/**
+	* Reads the rows of P2 values that follow the header and writes each row mirrored as a
+	* line of text.
+	*
+	* @param input InputStream positioned after the header
+	* @param output OutputStream the reversed rows are written to
+	* @param columns integer number of values in each row
+	* @param rows integer number of rows
+	* @throws IOException thrown if input cannot be read, ends early, or output cannot be written
+	* @throws IllegalArgumentException thrown if a value is not a non-negative integer
+	*/
+	private static void reverseText(InputStream input, OutputStream output, int columns, int rows) throws IOException {
+		int[] row = new int[columns];
+		byte[] line = new byte[getRowSize(columns, MAX_VALUE_DIGITS + 1) + 1];
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < columns; j++) {
+				row[j] = readValue(input);
+			}
+			reverseRow(row);
+			output.write(line, 0, formatRow(row, line));
+		}
+	}
+
+	/**
+	* Reads the rows of P5 samples that follow the header and writes each row mirrored. The
+	* bytes of a row are read into one buffer and mirrored there, without being decoded.
+	*
+	* @param input InputStream positioned just after the whitespace byte that ends the header
+	* @param output OutputStream the reversed rows are written to
+	* @param columns integer number of samples in each row
+	* @param rows integer number of rows
+	* @param sample_size integer number of bytes in each sample, 1 or 2
+	* @throws IOException thrown if input cannot be read, ends early, or output cannot be written
+	*/
+	private static void reverseBinary(InputStream input, OutputStream output, int columns, int rows, int sample_size) throws IOException {
+		byte[] row = new byte[getRowSize(columns, sample_size)];
+		ByteBuffer buffer = ByteBuffer.wrap(row);
+		for (int i = 0; i < rows; i++) {
+			if (input.readNBytes(row, 0, row.length) != row.length) {
+				throw new EOFException("PGM file ends early");
+			}
+			mirrorRow(buffer, 0, row.length, sample_size);
+			output.write(row);
+		}
+	}
+
+	/**
+	* Mirrors the samples of one row of a P5 image in place, so the first sample becomes the
+	* last. The bytes of each sample keep their order. Eight bytes are swapped at a time from
+	* each end of the row, with the samples within each group of eight bytes reversed by
+	* shifts, and the samples left in the middle are swapped one at a time.
+	*
+	* @param buffer ByteBuffer containing the row, such as a region of a mapped file
+	* @param start integer index of the row's first byte in buffer
+	* @param row_size integer number of bytes in the row, a multiple of sample_size
+	* @param sample_size integer number of bytes in each sample, 1 or 2
+	*/
+	public static void mirrorRow(ByteBuffer buffer, int start, int row_size, int sample_size) {
+		int i = start;
+		int j = start + row_size;		//One past the last byte not yet mirrored
+		while (j - i >= 2 * Long.BYTES) {
+			long first = buffer.getLong(i);
+			long last = buffer.getLong(j - Long.BYTES);
+			buffer.putLong(i, mirrorSamples(last, sample_size));
+			buffer.putLong(j - Long.BYTES, mirrorSamples(first, sample_size));
+			i += Long.BYTES;
+			j -= Long.BYTES;
+		}
+		if (sample_size == 1) {
+			for (j--; i < j; i++, j--) {
+				byte value = buffer.get(i);
+				buffer.put(i, buffer.get(j));
+				buffer.put(j, value);
+			}
+		} else {
+			for (j -= 2; i < j; i += 2, j -= 2) {
+				short value = buffer.getShort(i);
+				buffer.putShort(i, buffer.getShort(j));
+				buffer.putShort(j, value);
+			}
+		}
+	}
+
+	/**
+	* Returns eight bytes of samples in the reverse order: eight one byte samples or four two
+	* byte samples.
+	*
+	* @param samples long containing the samples
+	* @param sample_size integer number of bytes in each sample, 1 or 2
+	* @return long containing the samples in the reverse order
+	*/
+	private static long mirrorSamples(long samples, int sample_size) {
+		if (sample_size == 1) {
+			return Long.reverseBytes(samples);
+		}
+		long halves = Long.rotateLeft(samples, 32);		//Swaps the two pairs of samples
+		return (halves & 0xFFFF0000FFFF0000L) >>> 16 | (halves & 0x0000FFFF0000FFFFL) << 16;
+	}
+
+	/**
+	* Returns the number of bytes in each sample of a P5 image: one if the max grayscale
+	* value is below 256 and two otherwise.
+	*
+	* @param max_grayscale_value integer max grayscale value from the header
+	* @return integer number of bytes in each sample
+	* @throws IllegalArgumentException thrown if the value is not from 1 through MAX_BINARY_VALUE
+	*/
+	private static int getSampleSize(int max_grayscale_value) {
+		if (max_grayscale_value < 1 || max_grayscale_value > MAX_BINARY_VALUE) {
+			throw new IllegalArgumentException("Invalid P5 max grayscale value: " + max_grayscale_value);
+		}
+		return max_grayscale_value < 256 ? 1 : 2;
+	}
+
+	/**
+	* Returns the number of bytes in a row of columns values that are each at most value_size
+	* bytes long.
+	*
+	* @param columns integer number of values in the row
+	* @param value_size integer most bytes in each value
+	* @return integer number of bytes in the row
+	* @throws IllegalArgumentException thrown if a row would be larger than MAX_ROW_SIZE
+	*/
+	private static int getRowSize(int columns, int value_size) {
+		if (columns > MAX_ROW_SIZE / value_size) {
+			throw new IllegalArgumentException("Too many columns in a PGM row: " + columns);
+		}
+		return columns * value_size;
+	}
+
+	/**
+	* Mirrors a row of values in place, so the first value becomes the last.
+	*
+	* @param row integer array containing one row of the PGM file
+	*/
+	public static void reverseRow(int[] row) {
+		for (int i = 0, j = row.length - 1; i < j; i++, j--) {
+			int value = row[i];
+			row[i] = row[j];
+			row[j] = value;
+		}
+	}
+
+	/**
+	* Writes a row of values into line as ASCII text, each value preceded by a space and right
+	* aligned in a field at least VALUE_WIDTH characters wide, followed by a newline. The space
+	* keeps values wider than VALUE_WIDTH apart.
+	*
+	* @param row integer array containing non-negative values
+	* @param line byte array with room for MAX_VALUE_DIGITS + 1 bytes per value plus the newline
+	* @return integer number of bytes written to line
+	*/
+	private static int formatRow(int[] row, byte[] line) {
+		int length = 0;
+		for (int value : row) {
+			int digits = 1;
+			for (int rest = value / 10; rest > 0; rest /= 10) {
+				digits++;
+			}
+			line[length++] = ' ';
+			for (int k = digits; k < VALUE_WIDTH; k++) {
+				line[length++] = ' ';
+			}
+			length += digits;
+			int position = length;
+			do {
+				line[--position] = (byte) ('0' + value % 10);
+				value /= 10;
+			} while (value > 0);
+		}
+		line[length++] = '\n';
+		return length;
+	}
+
+	/**
+	* Skips the whitespace and comments before the next token of a PGM file and returns the
+	* token's first byte. A comment runs from a '#' to the end of its line.
+	*
+	* @param input InputStream containing the PGM file
+	* @return integer first byte of the token
+	* @throws IOException thrown if input cannot be read or ends before the token
+	*/
+	private static int skipSeparators(InputStream input) throws IOException {
+		int b = input.read();
+		while (b == '#' || Character.isWhitespace(b)) {
+			if (b == '#') {
+				while (b != '\n' && b != '\r' && b != -1) {
+					b = input.read();
+				}
+			}
+			b = input.read();
+		}
+		if (b == -1) {
+			throw new EOFException("PGM file ends early");
+		}
+		return b;
+	}
+
+	/**
+	* Reads the next whitespace separated token of a PGM file, such as its format type.
+	* The whitespace byte that ends the token is read as well.
+	*
+	* @param input InputStream containing the PGM file
+	* @return String containing the token
+	* @throws IOException thrown if input cannot be read or ends before the token
+	*/
+	private static String readToken(InputStream input) throws IOException {
+		StringBuilder token = new StringBuilder();
+		for (int b = skipSeparators(input); b != -1 && !Character.isWhitespace(b); b = input.read()) {
+			token.append((char) b);
+		}
+		return token.toString();
+	}
+
+	/**
+	* Reads the next non-negative decimal value of a PGM file without creating a String.
+	* The whitespace byte that ends the value is read as well.
+	*
+	* @param input InputStream containing the PGM file
+	* @return integer value
+	* @throws IOException thrown if input cannot be read or ends before the value
+	* @throws IllegalArgumentException thrown if the token is not a non-negative integer
+	*/
+	private static int readValue(InputStream input) throws IOException {
+		int b = skipSeparators(input);
+		int value = 0;
+		do {
+			if (b < '0' || b > '9' || value > (Integer.MAX_VALUE - (b - '0')) / 10) {
+				throw new IllegalArgumentException("Invalid PGM value at '" + (char) b + "'");
+			}
+			value = value * 10 + (b - '0');
+			b = input.read();
+		} while (b != -1 && !Character.isWhitespace(b));
+		return value;
+	}
+
 	/**
 	* Creates and fills a header array containing the metadata (columns, rows, max grayscale value)
 	* associated with the PGM file. Creates and fills an array containing the data from the original
 	* PGM file. Calls the method outputOperations, passing it the format type, header array, pgm array
-	* and filename.
+	* and filename. The whole image is held in memory, twice while it is reversed, so reverseFile
+	* is used for large images.
 	*
 	* @param filename String containing the name of the input file
 	*/
@@ -0,0 +1,197 @@
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+/**
+ * White box tests for the ReversePGM class: reverseRow(), mirrorRow(), reverseStream(),
+ * reverseFile(), and reverseMappedFile().
+ *
+ * @author Chris D'Englere
+ */
+public class ReversePGMTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void reverseRow() {
+		int[] row = {1, 2, 3, 4, 5};
+		ReversePGM.reverseRow(row);
+		assertArrayEquals(new int[] {5, 4, 3, 2, 1}, row);
+		int[] even = {7, 8};
+		ReversePGM.reverseRow(even);
+		assertArrayEquals(new int[] {8, 7}, even);
+		ReversePGM.reverseRow(new int[0]);
+	}
+
+	@Test
+	public void reverseStreamMatchesReverse() throws IOException {
+		int[][] pgm = {{0, 1, 2, 3}, {10, 20, 30, 40}, {100, 200, 255, 9}};
+		StringBuilder image = new StringBuilder("P2\n# made by a test\n4 3\n255\n");
+		for (int[] row : pgm) {
+			for (int value : row) {
+				image.append(value).append(' ');
+			}
+			image.append('\n');
+		}
+		StringBuilder expected = new StringBuilder("P2\n4 3\n255\n");
+		for (int[] row : ReversePGM.reverse(pgm)) {
+			for (int value : row) {
+				expected.append(String.format(" %3d", value));
+			}
+			expected.append('\n');
+		}
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ReversePGM.reverseStream(new ByteArrayInputStream(image.toString().getBytes(StandardCharsets.US_ASCII)), output);
+		assertEquals(expected.toString(), output.toString(StandardCharsets.US_ASCII));
+	}
+
+	@Test
+	public void reverseFile() throws IOException {
+		Path file = directory.resolve("image.pgm");
+		Files.writeString(file, "P2\n3 2\n99\n1 22 33\n44 55 6\n");
+		ReversePGM.reverseFile(file);
+		assertEquals("P2\n3 2\n99\n  33  22   1\n   6  55  44\n", Files.readString(file));
+		ReversePGM.reverseFile(file);
+		assertEquals("P2\n3 2\n99\n   1  22  33\n  44  55   6\n", Files.readString(file));
+	}
+
+	@Test
+	public void reverseFileTwiceRestoresWideValues() throws IOException {
+		Path file = directory.resolve("wide.pgm");
+		String image = "P2\n4 2\n255\n   0 100 200 255\n  17 128 254   9\n";
+		Files.writeString(file, image);
+		ReversePGM.reverseFile(file);
+		assertEquals("P2\n4 2\n255\n 255 200 100   0\n   9 254 128  17\n", Files.readString(file));
+		ReversePGM.reverseFile(file);
+		assertEquals(image, Files.readString(file));
+	}
+
+	@Test
+	public void reverseFileKeepsLinkAndPermissions() throws IOException {
+		assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"), "needs POSIX permissions");
+		Path file = directory.resolve("image.pgm");
+		Files.writeString(file, "P2\n2 1\n99\n1 2\n");
+		Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+		Files.setPosixFilePermissions(file, permissions);
+		Path stale = directory.resolve("image.pgm" + ReversePGM.TEMPORARY_EXTENSION);
+		Files.writeString(stale, "left by another run");
+		Path link = Files.createSymbolicLink(directory.resolve("link.pgm"), file);
+
+		ReversePGM.reverseFile(link);
+		assertTrue(Files.isSymbolicLink(link));
+		assertEquals("P2\n2 1\n99\n   2   1\n", Files.readString(file));
+		assertEquals(permissions, Files.getPosixFilePermissions(file));
+		assertEquals("left by another run", Files.readString(stale));
+	}
+
+	@Test
+	public void reverseFileKeepsOriginalOnError() throws IOException {
+		Path truncated = directory.resolve("truncated.pgm");
+		String image = "P2\n3 2\n255\n1 2 3\n4 5\n";
+		Files.writeString(truncated, image);
+		assertThrows(EOFException.class, () -> ReversePGM.reverseFile(truncated));
+		assertEquals(image, Files.readString(truncated));
+
+		Path binary = directory.resolve("binary.pgm");
+		Files.writeString(binary, "P7\n1 1\n255\n0\n");
+		assertThrows(IllegalArgumentException.class, () -> ReversePGM.reverseFile(binary));
+
+		Path invalid = directory.resolve("invalid.pgm");
+		Files.writeString(invalid, "P2\n2 1\n255\n1 x\n");
+		assertThrows(IllegalArgumentException.class, () -> ReversePGM.reverseFile(invalid));
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + ReversePGM.TEMPORARY_EXTENSION)) {
+			assertFalse(files.iterator().hasNext());
+		}
+	}
+
+	@Test
+	public void mirrorRow() {
+		for (int sample_size = 1; sample_size <= 2; sample_size++) {
+			for (int columns = 0; columns <= 40; columns++) {
+				byte[] row = new byte[3 + columns * sample_size];		//Starts at an unaligned index
+				for (int i = 0; i < row.length; i++) {
+					row[i] = (byte) (i * 37 + 11);
+				}
+				byte[] expected = row.clone();
+				for (int j = 0; j < columns; j++) {
+					System.arraycopy(row, 3 + (columns - 1 - j) * sample_size, expected, 3 + j * sample_size, sample_size);
+				}
+				ReversePGM.mirrorRow(ByteBuffer.wrap(row), 3, columns * sample_size, sample_size);
+				assertArrayEquals(expected, row, "columns " + columns + ", sample size " + sample_size);
+			}
+		}
+	}
+
+	@Test
+	public void reverseBinaryFile() throws IOException {
+		Random random = new Random(7);
+		for (int max_grayscale_value : new int[] {255, 65535}) {
+			int sample_size = max_grayscale_value < 256 ? 1 : 2;
+			int columns = 37;
+			int rows = 5;
+			byte[] header = String.format("P5\n# scanned\n%d %d\n%d\n", columns, rows, max_grayscale_value).getBytes(StandardCharsets.US_ASCII);
+			byte[] pixels = new byte[columns * rows * sample_size];
+			random.nextBytes(pixels);
+			byte[] mirrored = new byte[pixels.length];
+			for (int i = 0; i < rows; i++) {
+				for (int j = 0; j < columns; j++) {
+					System.arraycopy(pixels, (i * columns + columns - 1 - j) * sample_size, mirrored, (i * columns + j) * sample_size, sample_size);
+				}
+			}
+
+			Path streamed = directory.resolve("streamed" + sample_size + ".pgm");
+			Files.write(streamed, concat(header, pixels));
+			ReversePGM.reverseFile(streamed);
+			byte[] written = String.format("P5\n%d %d\n%d\n", columns, rows, max_grayscale_value).getBytes(StandardCharsets.US_ASCII);
+			assertArrayEquals(concat(written, mirrored), Files.readAllBytes(streamed));
+
+			Path mapped = directory.resolve("mapped" + sample_size + ".pgm");
+			Files.write(mapped, concat(header, pixels));
+			ReversePGM.reverseMappedFile(mapped);
+			assertArrayEquals(concat(header, mirrored), Files.readAllBytes(mapped));
+			ReversePGM.reverseMappedFile(mapped);
+			assertArrayEquals(concat(header, pixels), Files.readAllBytes(mapped));
+		}
+	}
+
+	@Test
+	public void reverseMappedFileRejectsInvalidFiles() throws IOException {
+		Path text = directory.resolve("text.pgm");
+		Files.writeString(text, "P2\n1 1\n255\n0\n");
+		assertThrows(IllegalArgumentException.class, () -> ReversePGM.reverseMappedFile(text));
+
+		Path truncated = directory.resolve("truncated.pgm");
+		byte[] image = concat("P5\n4 2\n255\n".getBytes(StandardCharsets.US_ASCII), new byte[] {1, 2, 3, 4, 5, 6, 7});
+		Files.write(truncated, image);
+		assertThrows(EOFException.class, () -> ReversePGM.reverseMappedFile(truncated));
+		assertThrows(EOFException.class, () -> ReversePGM.reverseFile(truncated));
+		assertArrayEquals(image, Files.readAllBytes(truncated));
+
+		Path deep = directory.resolve("deep.pgm");
+		Files.writeString(deep, "P5\n1 1\n65536\n\0\0\0\0");
+		assertThrows(IllegalArgumentException.class, () -> ReversePGM.reverseMappedFile(deep));
+	}
+
+	/**
+	* Returns the bytes of first followed by the bytes of second.
+	*
+	* @param first byte array
+	* @param second byte array
+	* @return byte array containing both
+	*/
+	private static byte[] concat(byte[] first, byte[] second) {
+		byte[] both = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, both, first.length, second.length);
+		return both;
+	}
+}
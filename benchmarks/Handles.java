@@ -0,0 +1,80 @@
+package benchmarks;
+
+import java.lang.invoke.*;
+
+/**
+ * Looks up static methods of the programs for the benchmarks. JMH only accepts benchmark
+ * classes inside a package, and a class inside a package cannot name the classes in the
+ * default package, so the benchmarks call the programs through method handles. A handle
+ * stored in a static final field is inlined by the JIT just like a direct call. Methods that
+ * take or return default package classes such as MovieCatalog are looked up with findErased,
+ * which passes those values as Object.
+ *
+ * @author Chris D'Englere
+ */
+public class Handles {
+
+	/**
+	* Returns a handle for a public static method of a class in the default package.
+	*
+	* @param class_name String containing the name of the class, for example MapChanger
+	* @param method_name String containing the name of the method
+	* @param return_type Class returned by the method
+	* @param parameter_types Classes of the method's parameters
+	* @return MethodHandle for the method
+	*/
+	public static MethodHandle find(String class_name, String method_name, Class<?> return_type, Class<?>... parameter_types) {
+		try {
+			return MethodHandles.publicLookup().findStatic(Class.forName(class_name), method_name,
+				MethodType.methodType(return_type, parameter_types));
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot find " + class_name + "." + method_name, e);
+		}
+	}
+
+	/**
+	* Returns the class with the given name in the default package, so that it can be given
+	* to find as a return or parameter type.
+	*
+	* @param class_name String containing the name of the class, for example MovieCatalog
+	* @return Class with that name
+	*/
+	public static Class<?> type(String class_name) {
+		try {
+			return Class.forName(class_name);
+		}
+		catch (ClassNotFoundException e) {
+			throw new IllegalStateException("Cannot find " + class_name, e);
+		}
+	}
+
+	/**
+	* Returns a handle like find, except that every default package class it takes or returns
+	* is replaced with Object. Objects passed to it are cast back to the default package class.
+	*
+	* @param class_name String containing the name of the class, for example MovieSelector
+	* @param method_name String containing the name of the method
+	* @param return_type Class returned by the method
+	* @param parameter_types Classes of the method's parameters
+	* @return MethodHandle for the method, with default package classes replaced with Object
+	*/
+	public static MethodHandle findErased(String class_name, String method_name, Class<?> return_type,
+		Class<?>... parameter_types) {
+		MethodType type = MethodType.methodType(erase(return_type));
+		for (Class<?> parameter_type : parameter_types) {
+			type = type.appendParameterTypes(erase(parameter_type));
+		}
+		return find(class_name, method_name, return_type, parameter_types).asType(type);
+	}
+
+	/**
+	* Returns Object for a class in the default package and the class itself otherwise.
+	*
+	* @param type Class to erase
+	* @return Class that can be named inside a package
+	*/
+	private static Class<?> erase(Class<?> type) {
+		return !type.isPrimitive() && !type.isArray() && type.getPackageName().isEmpty() ? Object.class : type;
+	}
+}
@@ -0,0 +1,182 @@
+package benchmarks;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.random.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+/**
+ * JMH benchmarks for the hot paths of MapChanger over generated maps. Each map holds about
+ * MAP_SIZE characters split into lines of lineLength characters, and density is the share of
+ * each uncovered line that is spaces (and so the share of each obscured line that is obscure
+ * characters). The byte kernels are measured both with the Vector API and without it.
+ * Build and run with the gc profiler to see the allocation rate as well:
+ *
+ *     mvn -P jmh package
+ *     java -jar target/benchmarks.jar MapChangerBenchmark -prof gc
+ *
+ * @author Chris D'Englere
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class MapChangerBenchmark {
+	public static final int MAP_SIZE = 1 << 20;		//Number of characters (1 MB) in each generated map
+	public static final String VALID_CHARACTERS = "+/\\~X";
+	private static final MethodHandle OBSCURE_LINE = Handles.find("MapChanger", "obscureLine", String.class, String.class);
+	private static final MethodHandle UNCOVER_LINE = Handles.find("MapChanger", "uncoverLine", String.class, String.class);
+	private static final MethodHandle IS_VALID_CHARACTER = Handles.find("MapChanger", "isValidCharacter", boolean.class, char.class);
+	private static final MethodHandle PROCESS_FILE = Handles.find("MapChanger", "processFile", void.class,
+		boolean.class, Scanner.class, PrintStream.class);
+	private static final MethodHandle OBSCURE_BYTES_SCALAR = Handles.find("MapChanger", "obscureBytesScalar", int.class,
+		byte[].class, int.class, byte[].class, int.class, int.class, RandomGenerator.class);
+	private static final MethodHandle UNCOVER_BYTES_SCALAR = Handles.find("MapChanger", "uncoverBytesScalar", int.class,
+		byte[].class, int.class, byte[].class, int.class, int.class);
+	private static final MethodHandle OBSCURE_BYTES_VECTOR = Handles.find("MapChangerVector", "obscureBytes", int.class,
+		byte[].class, int.class, byte[].class, int.class, int.class, RandomGenerator.class);
+	private static final MethodHandle UNCOVER_BYTES_VECTOR = Handles.find("MapChangerVector", "uncoverBytes", int.class,
+		byte[].class, int.class, byte[].class, int.class, int.class);
+	private static final MethodHandle PROCESS_MAPPED_FILE = Handles.find("MapChanger", "processMappedFile", void.class,
+		boolean.class, Path.class, Path.class);
+
+	@Param({"80", "1000", "100000"})
+	public int lineLength;
+
+	@Param({"0.1", "0.5", "0.9"})
+	public double density;
+
+	private String[] uncovered_lines;
+	private String[] obscured_lines;
+	private String uncovered_map;
+	private String obscured_map;
+	private byte[] uncovered_bytes;
+	private byte[] obscured_bytes;
+	private byte[] output_bytes;
+	private SplittableRandom obscure_random = new SplittableRandom(1);
+	private Path uncovered_file;
+	private Path obscured_file;
+	private Path output_file;
+
+	/**
+	* Generates the uncovered and obscured maps from a fixed seed and writes them to
+	* temporary files for the file benchmarks.
+	*
+	* @throws Throwable thrown if the temporary files cannot be written
+	*/
+	@Setup(Level.Trial)
+	public void generateMaps() throws Throwable {
+		SplittableRandom random = new SplittableRandom(lineLength);
+		int rows = Math.max(1, MAP_SIZE / lineLength);
+		uncovered_lines = new String[rows];
+		obscured_lines = new String[rows];
+		for (int i = 0; i < rows; i++) {
+			char[] line = new char[lineLength];
+			for (int j = 0; j < lineLength; j++) {
+				if (random.nextDouble() < density) {
+					line[j] = ' ';
+				} else {
+					line[j] = VALID_CHARACTERS.charAt(random.nextInt(VALID_CHARACTERS.length()));
+				}
+			}
+			uncovered_lines[i] = new String(line);
+			obscured_lines[i] = (String) OBSCURE_LINE.invokeExact(uncovered_lines[i]);
+		}
+		uncovered_map = String.join("\n", uncovered_lines) + "\n";
+		obscured_map = String.join("\n", obscured_lines) + "\n";
+		uncovered_bytes = uncovered_map.getBytes();
+		obscured_bytes = obscured_map.getBytes();
+		output_bytes = new byte[obscured_bytes.length];
+		uncovered_file = Files.createTempFile("uncovered", ".txt");
+		obscured_file = Files.createTempFile("obscured", ".txt");
+		output_file = Files.createTempFile("output", ".txt");
+		Files.writeString(uncovered_file, uncovered_map);
+		Files.writeString(obscured_file, obscured_map);
+	}
+
+	/**
+	* Deletes the temporary files.
+	*
+	* @throws IOException thrown if a temporary file cannot be deleted
+	*/
+	@TearDown(Level.Trial)
+	public void deleteFiles() throws IOException {
+		Files.deleteIfExists(uncovered_file);
+		Files.deleteIfExists(obscured_file);
+		Files.deleteIfExists(output_file);
+	}
+
+	@Benchmark
+	public void obscureLine(Blackhole blackhole) throws Throwable {
+		for (String line : uncovered_lines) {
+			blackhole.consume((String) OBSCURE_LINE.invokeExact(line));
+		}
+	}
+
+	@Benchmark
+	public void uncoverLine(Blackhole blackhole) throws Throwable {
+		for (String line : obscured_lines) {
+			blackhole.consume((String) UNCOVER_LINE.invokeExact(line));
+		}
+	}
+
+	@Benchmark
+	public int isValidCharacter() throws Throwable {
+		int valid = 0;
+		for (int i = 0; i < obscured_map.length(); i++) {
+			if ((boolean) IS_VALID_CHARACTER.invokeExact(obscured_map.charAt(i))) {
+				valid++;
+			}
+		}
+		return valid;
+	}
+
+	@Benchmark
+	public int obscureBytesScalar() throws Throwable {
+		return (int) OBSCURE_BYTES_SCALAR.invokeExact(uncovered_bytes, 0, output_bytes, 0, uncovered_bytes.length,
+			(RandomGenerator) obscure_random);
+	}
+
+	@Benchmark
+	public int obscureBytesVector() throws Throwable {
+		return (int) OBSCURE_BYTES_VECTOR.invokeExact(uncovered_bytes, 0, output_bytes, 0, uncovered_bytes.length,
+			(RandomGenerator) obscure_random);
+	}
+
+	@Benchmark
+	public int uncoverBytesScalar() throws Throwable {
+		return (int) UNCOVER_BYTES_SCALAR.invokeExact(obscured_bytes, 0, output_bytes, 0, obscured_bytes.length);
+	}
+
+	@Benchmark
+	public int uncoverBytesVector() throws Throwable {
+		return (int) UNCOVER_BYTES_VECTOR.invokeExact(obscured_bytes, 0, output_bytes, 0, obscured_bytes.length);
+	}
+
+	@Benchmark
+	public void processFileObscure() throws Throwable {
+		PROCESS_FILE.invokeExact(true, new Scanner(uncovered_map), new PrintStream(OutputStream.nullOutputStream()));
+	}
+
+	@Benchmark
+	public void processFileUncover() throws Throwable {
+		PROCESS_FILE.invokeExact(false, new Scanner(obscured_map), new PrintStream(OutputStream.nullOutputStream()));
+	}
+
+	@Benchmark
+	public void processMappedFileObscure() throws Throwable {
+		PROCESS_MAPPED_FILE.invokeExact(true, uncovered_file, output_file);
+	}
+
+	@Benchmark
+	public void processMappedFileUncover() throws Throwable {
+		PROCESS_MAPPED_FILE.invokeExact(false, obscured_file, output_file);
+	}
+}
@@ -0,0 +1,162 @@
+package benchmarks;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * JMH benchmarks for loading and searching MovieSelector catalogs of rows movies, written by
+ * MovieCatalogGenerator from a fixed seed. Loading is measured from the movie file on one
+ * thread and on every processor, and from the snapshot saved by openCatalog. Each search runs
+ * one of QUERIES queries chosen in setup, in turn, and the listing benchmark writes the titles
+ * of a decade to a Writer that discards them. Run with the gc profiler for the allocation of
+ * each query, and set rows for the catalog sizes to plan for, up to 50 million:
+ *
+ *     mvn -P jmh package
+ *     java -jar target/benchmarks.jar MovieSelectorBenchmark -prof gc -p rows=10000,1000000,10000000
+ *
+ * @author Chris D'Englere
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class MovieSelectorBenchmark {
+	public static final long SEED = 42;
+	public static final int QUERIES = 1024;		//Number of queries of each type, a power of two
+	public static final String[] TITLE_QUERIES = {"the", "star wars", "love", "night", "golden island", "caf\u00e9", "return 2"};
+	public static final String[] SHORT_TITLE_QUERIES = {"a", "st", "\u00e9", "ni"};		//Too short for the title index
+	private static final Class<?> CATALOG = Handles.type("MovieCatalog");
+	private static final MethodHandle GENERATE = Handles.find("MovieCatalogGenerator", "generate", void.class,
+		Path.class, long.class, long.class);
+	private static final MethodHandle LOAD_CATALOG = Handles.findErased("MovieSelector", "loadCatalog", CATALOG, String.class);
+	private static final MethodHandle LOAD_CATALOG_PARALLEL = Handles.findErased("MovieSelector", "loadCatalogParallel", CATALOG,
+		String.class, int.class);
+	private static final MethodHandle OPEN_CATALOG = Handles.findErased("MovieSelector", "openCatalog", CATALOG, String.class);
+	private static final MethodHandle FIND_BY_YEAR = Handles.findErased("MovieSelector", "findByYear", int[].class,
+		CATALOG, int.class);
+	private static final MethodHandle FIND_BY_YEAR_RANGE = Handles.findErased("MovieSelector", "findByYearRange", int[].class,
+		CATALOG, int.class, int.class);
+	private static final MethodHandle FIND_BY_TITLE = Handles.findErased("MovieSelector", "findByTitle", int[].class,
+		CATALOG, String.class);
+	private static final MethodHandle FIND_MOVIES = Handles.findErased("MovieSelector", "findMovies", int[].class,
+		CATALOG, int.class, byte.class, int.class);
+	private static final MethodHandle WRITE_TITLES = Handles.findErased("MovieSelector", "writeTitles", void.class,
+		Writer.class, CATALOG, int[].class);
+
+	@Param({"10000", "1000000"})
+	public long rows;
+
+	private Path directory;
+	private String filename;
+	private Object catalog;
+	private int[] years = new int[QUERIES];
+	private int[] to_years = new int[QUERIES];
+	private String[] titles = new String[QUERIES];
+	private String[] short_titles = new String[QUERIES];
+	private int[] genres = new int[QUERIES];
+	private byte[] ratings = new byte[QUERIES];
+	private int[] lengths = new int[QUERIES];
+	private int[] decade;
+	private int query;
+
+	/**
+	* Writes the movie file, saves its snapshot, loads the catalog that is searched, and
+	* chooses the queries, all from a fixed seed.
+	*
+	* @throws Throwable thrown if the movie file cannot be written or read
+	*/
+	@Setup(Level.Trial)
+	public void generateCatalog() throws Throwable {
+		directory = Files.createTempDirectory("movies");
+		Path file = directory.resolve("movies.txt");
+		GENERATE.invokeExact(file, rows, SEED);
+		filename = file.toString();
+		catalog = (Object) OPEN_CATALOG.invokeExact(filename);
+		SplittableRandom random = new SplittableRandom(SEED);
+		for (int i = 0; i < QUERIES; i++) {
+			years[i] = random.nextInt(1880, 2026);
+			to_years[i] = Math.min(2025, years[i] + random.nextInt(10));
+			titles[i] = TITLE_QUERIES[random.nextInt(TITLE_QUERIES.length)];
+			short_titles[i] = SHORT_TITLE_QUERIES[random.nextInt(SHORT_TITLE_QUERIES.length)];
+			genres[i] = random.nextInt(6);
+			ratings[i] = (byte) random.nextInt(6);
+			lengths[i] = random.nextInt(60, 240);
+		}
+		decade = (int[]) FIND_BY_YEAR_RANGE.invokeExact(catalog, 1990, 1999);
+	}
+
+	/**
+	* Deletes the movie file, its snapshot, and their directory.
+	*
+	* @throws IOException thrown if a file cannot be deleted
+	*/
+	@TearDown(Level.Trial)
+	public void deleteFiles() throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Object loadCatalog() throws Throwable {
+		return (Object) LOAD_CATALOG.invokeExact(filename);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Object loadCatalogParallel() throws Throwable {
+		return (Object) LOAD_CATALOG_PARALLEL.invokeExact(filename, Runtime.getRuntime().availableProcessors());
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Object openCatalogSnapshot() throws Throwable {
+		return (Object) OPEN_CATALOG.invokeExact(filename);
+	}
+
+	@Benchmark
+	public int[] findByYear() throws Throwable {
+		int i = query++ & (QUERIES - 1);
+		return (int[]) FIND_BY_YEAR.invokeExact(catalog, years[i]);
+	}
+
+	@Benchmark
+	public int[] findByYearRange() throws Throwable {
+		int i = query++ & (QUERIES - 1);
+		return (int[]) FIND_BY_YEAR_RANGE.invokeExact(catalog, years[i], to_years[i]);
+	}
+
+	@Benchmark
+	public int[] findByTitle() throws Throwable {
+		int i = query++ & (QUERIES - 1);
+		return (int[]) FIND_BY_TITLE.invokeExact(catalog, titles[i]);
+	}
+
+	@Benchmark
+	public int[] findByShortTitle() throws Throwable {
+		int i = query++ & (QUERIES - 1);
+		return (int[]) FIND_BY_TITLE.invokeExact(catalog, short_titles[i]);
+	}
+
+	@Benchmark
+	public int[] findMovies() throws Throwable {
+		int i = query++ & (QUERIES - 1);
+		return (int[]) FIND_MOVIES.invokeExact(catalog, genres[i], ratings[i], lengths[i]);
+	}
+
+	@Benchmark
+	public void writeDecadeTitles() throws Throwable {
+		WRITE_TITLES.invokeExact(Writer.nullWriter(), catalog, decade);
+	}
+}